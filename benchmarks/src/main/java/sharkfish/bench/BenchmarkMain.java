@@ -0,0 +1,43 @@
+/* BenchmarkMain.java */
+
+package sharkfish.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  BenchmarkMain is the entry point of benchmarks.jar.  It accepts the usual
+ *  JMH command line, but unless told otherwise it writes its results as JSON
+ *  to jmh-result.json so that runs of different versions can be compared.
+ */
+
+public class BenchmarkMain {
+
+    public static void main(String[] argv)
+	throws IOException, RunnerException, CommandLineOptionException {
+	CommandLineOptions cmd = new CommandLineOptions(argv);
+	if (cmd.shouldHelp()) {
+	    cmd.showHelp();
+	    return;
+	}
+	if (cmd.shouldList()) {
+	    new Runner(cmd).list();
+	    return;
+	}
+	OptionsBuilder options = new OptionsBuilder();
+	options.parent(cmd);
+	if (!cmd.getResultFormat().hasValue()) {
+	    options.resultFormat(ResultFormatType.JSON);
+	}
+	if (!cmd.getResult().hasValue()) {
+	    options.result("jmh-result.json");
+	}
+	new Runner(options.build()).run();
+    }
+}
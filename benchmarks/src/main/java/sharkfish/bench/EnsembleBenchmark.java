@@ -0,0 +1,83 @@
+/* EnsembleBenchmark.java */
+
+package sharkfish.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sharkfish.Ensemble;
+import sharkfish.Ocean;
+
+/**
+ *  EnsembleBenchmark compares stepping "members" small oceans in lockstep
+ *  with an Ensemble against stepping the same oceans as separate Ocean
+ *  objects on the common fork-join pool.  Each invocation advances every
+ *  member "timesteps" generations from the same seeded start.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnsembleBenchmark {
+
+    @Param({"1024", "4096"})
+    public int members;
+
+    @Param({"50"})
+    public int width;
+
+    @Param({"25"})
+    public int height;
+
+    @Param({"10"})
+    public int timesteps;
+
+    private long[] seeds;
+    private Ocean[] seas;
+    private Ensemble ensemble;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+	seeds = new long[members];
+	seas = new Ocean[members];
+	for (int m = 0; m < members; m++) {
+	    seeds[m] = m;
+	    seas[m] = Ocean.seeded(width, height, 3, 0.5, 0.15, m);
+	}
+	ensemble = Ensemble.seeded(width, height, 3, 0.5, 0.15, seeds);
+    }
+
+    @Benchmark
+    public Ensemble ensemble() {
+	for (int t = 0; t < timesteps; t++) {
+	    ensemble.timeStep();
+	}
+	return ensemble;
+    }
+
+    @Benchmark
+    public Ocean[] oceans() {
+	IntStream.range(0, members).parallel().forEach(m -> {
+	    for (int t = 0; t < timesteps; t++) {
+		seas[m] = seas[m].timeStep();
+	    }
+	});
+	return seas;
+    }
+}
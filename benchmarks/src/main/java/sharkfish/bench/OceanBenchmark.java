@@ -0,0 +1,89 @@
+/* OceanBenchmark.java */
+
+package sharkfish.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sharkfish.Ocean;
+
+/**
+ *  OceanBenchmark measures timeStep(), surroundings(), cellContents() and
+ *  the seeded() factory across ocean sizes, densities and cell layouts.
+ *  The surroundings() and cellContents() benchmarks sweep every cell once,
+ *  row by row, the way SimText and Simulation read an ocean.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OceanBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"0.1", "0.5"})
+    public double fishDensity;
+
+    @Param({"0.05", "0.15"})
+    public double sharkDensity;
+
+    @Param({"3"})
+    public int starveTime;
+
+    @Param({"ROW_MAJOR", "Z_ORDER"})
+    public Ocean.Layout layout;
+
+    private Ocean sea;
+
+    @Setup
+    public void setUp() {
+	sea = Seeds.ocean(size, size, starveTime, fishDensity, sharkDensity, 0L,
+			  layout);
+    }
+
+    @Benchmark
+    public Ocean timeStep() {
+	return sea.timeStep();
+    }
+
+    @Benchmark
+    public Ocean seeded() {
+	return Ocean.seeded(size, size, starveTime, fishDensity, sharkDensity, 0L);
+    }
+
+    @Benchmark
+    public void surroundings(Blackhole bh) {
+	for (int y = 0; y < size; y++) {
+	    for (int x = 0; x < size; x++) {
+		bh.consume(sea.surroundings(x, y));
+	    }
+	}
+    }
+
+    @Benchmark
+    public int cellContents() {
+	int sum = 0;
+	for (int y = 0; y < size; y++) {
+	    for (int x = 0; x < size; x++) {
+		sum += sea.cellContents(x, y);
+	    }
+	}
+	return sum;
+    }
+}
@@ -0,0 +1,79 @@
+/* RunLengthEncodingAddBenchmark.java */
+
+package sharkfish.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sharkfish.RunLengthEncoding;
+
+/**
+ *  RunLengthEncodingAddBenchmark measures addFish() and addShark() on
+ *  encodings with different numbers of runs.  Each invocation starts from a
+ *  fresh encoding (built outside the measured region) and places one animal
+ *  in the middle of the last empty run, which is the longest walk the list
+ *  can take.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunLengthEncodingAddBenchmark {
+
+    @Param({"512"})
+    public int size;
+
+    @Param({"1", "101", "10001"})
+    public int runs;
+
+    @Param({"3"})
+    public int starveTime;
+
+    private int[][] runArrays;
+    private int targetX;
+    private int targetY;
+    private RunLengthEncoding rle;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+	runArrays = Seeds.runs(size, size, runs);
+	int[] lengths = runArrays[1];
+	int last = lengths[runs - 1];
+	int target = size * size - last + last / 2;
+	targetX = target % size;
+	targetY = target / size;
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+	rle = new RunLengthEncoding(size, size, starveTime,
+				    runArrays[0], runArrays[1]);
+    }
+
+    @Benchmark
+    public RunLengthEncoding addFish() {
+	rle.addFish(targetX, targetY);
+	return rle;
+    }
+
+    @Benchmark
+    public RunLengthEncoding addShark() {
+	rle.addShark(targetX, targetY);
+	return rle;
+    }
+}
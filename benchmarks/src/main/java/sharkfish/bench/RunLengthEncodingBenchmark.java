@@ -0,0 +1,92 @@
+/* RunLengthEncodingBenchmark.java */
+
+package sharkfish.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sharkfish.Ocean;
+import sharkfish.RunLengthEncoding;
+
+/**
+ *  RunLengthEncodingBenchmark measures the three RunLengthEncoding
+ *  constructors and toOcean() across ocean sizes and densities.  The run
+ *  arrays fed to the five-parameter constructor come from encoding the same
+ *  seeded ocean, so every constructor sees the same number of runs.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunLengthEncodingBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"0.1", "0.5"})
+    public double fishDensity;
+
+    @Param({"0.05"})
+    public double sharkDensity;
+
+    @Param({"3"})
+    public int starveTime;
+
+    private Ocean sea;
+    private RunLengthEncoding rle;
+    private int[] runTypes;
+    private int[] runLengths;
+
+    @Setup
+    public void setUp() {
+	sea = Seeds.ocean(size, size, starveTime, fishDensity, sharkDensity, 0L);
+	rle = new RunLengthEncoding(sea);
+	int runs = 0;
+	rle.restartRuns();
+	while (rle.nextRun() != null) {
+	    runs++;
+	}
+	runTypes = new int[runs];
+	runLengths = new int[runs];
+	rle.restartRuns();
+	for (int n = 0; n < runs; n++) {
+	    int[] run = rle.nextRun();
+	    runTypes[n] = run[0];
+	    runLengths[n] = run[1];
+	}
+    }
+
+    @Benchmark
+    public RunLengthEncoding emptyConstructor() {
+	return new RunLengthEncoding(size, size, starveTime);
+    }
+
+    @Benchmark
+    public RunLengthEncoding runsConstructor() {
+	return new RunLengthEncoding(size, size, starveTime, runTypes, runLengths);
+    }
+
+    @Benchmark
+    public RunLengthEncoding oceanConstructor() {
+	return new RunLengthEncoding(sea);
+    }
+
+    @Benchmark
+    public Ocean toOcean() {
+	return rle.toOcean();
+    }
+}
@@ -0,0 +1,86 @@
+/* Seeds.java */
+
+package sharkfish.bench;
+
+import java.util.Random;
+
+import sharkfish.Ocean;
+import sharkfish.RuleTable;
+
+/**
+ *  Seeds is a helper class that builds the reproducible input oceans shared
+ *  by the benchmarks.
+ */
+
+final class Seeds {
+
+    private Seeds() {
+    }
+
+    /**
+     *  ocean() returns a width x height ocean in which each cell independently
+     *  holds a fish with probability fishDensity, a shark with probability
+     *  sharkDensity, and is empty otherwise.
+     *  @param width is the width of the ocean.
+     *  @param height is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @param fishDensity is the fraction of cells that start with a fish.
+     *  @param sharkDensity is the fraction of cells that start with a shark.
+     *  @param seed is the seed of the random number generator.
+     *  @return the seeded ocean.
+     */
+
+    static Ocean ocean(int width, int height, int starveTime,
+		       double fishDensity, double sharkDensity, long seed) {
+	return ocean(width, height, starveTime, fishDensity, sharkDensity, seed,
+		     Ocean.Layout.ROW_MAJOR);
+    }
+
+    /**
+     *  ocean() (with a layout) returns the same ocean, storing its cells in
+     *  "layout".
+     */
+
+    static Ocean ocean(int width, int height, int starveTime,
+		       double fishDensity, double sharkDensity, long seed,
+		       Ocean.Layout layout) {
+	Ocean sea = new Ocean(width, height, RuleTable.standard(starveTime), layout);
+	Random random = new Random(seed);
+	for (int y = 0; y < height; y++) {
+	    for (int x = 0; x < width; x++) {
+		double d = random.nextDouble();
+		if (d < fishDensity) {
+		    sea.addFish(x, y);
+		} else if (d < fishDensity + sharkDensity) {
+		    sea.addShark(x, y, random.nextInt(starveTime + 1));
+		}
+	    }
+	}
+	return sea;
+    }
+
+    /**
+     *  runs() returns the run types and run lengths of an encoding of a
+     *  width x height ocean with the given number of runs.  Runs alternate
+     *  between EMPTY and FISH, starting and ending with EMPTY, and the cells
+     *  are spread as evenly as possible among them.
+     *  @param width is the width of the ocean.
+     *  @param height is the height of the ocean.
+     *  @param runs is the number of runs; it must be odd and at most
+     *         width * height.
+     *  @return an array whose index zero holds the run types and whose index
+     *          one holds the run lengths.
+     */
+
+    static int[][] runs(int width, int height, int runs) {
+	int cells = width * height;
+	int[] types = new int[runs];
+	int[] lengths = new int[runs];
+	for (int n = 0; n < runs; n++) {
+	    types[n] = (n % 2 == 0) ? Ocean.EMPTY : Ocean.FISH;
+	    lengths[n] = cells / runs;
+	}
+	lengths[runs - 1] += cells % runs;
+	return new int[][] {types, lengths};
+    }
+}
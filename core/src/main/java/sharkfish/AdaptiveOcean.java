@@ -0,0 +1,306 @@
+/* AdaptiveOcean.java */
+
+package sharkfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ *  The AdaptiveOcean class runs a simulation on whichever OceanBackend is
+ *  cheapest for the ocean's current state, and moves it to another backend
+ *  when the state changes character.  After every timestep it samples the
+ *  population density and the number of runs per cell (counted exactly on a
+ *  RunLengthOcean, and estimated from a few rows otherwise) and picks:
+ *
+ *    SPARSE      when the density is below sparseBelow (nearly extinct);
+ *    RUN_LENGTH  when there are fewer than runLengthBelow runs per cell
+ *                (large uniform regions);
+ *    PACKED      otherwise (teeming), an OffHeapOcean stepped in parallel;
+ *    DENSE       instead of PACKED, an Ocean, when the rules or starveTime
+ *                rule out the packed format, and always for an Ocean with
+ *                a neighborhood other than Neighborhood.STANDARD.
+ *
+ *  To avoid moving back and forth around a threshold, the ocean migrates only
+ *  after the same other backend has been preferred for "patience" timesteps
+ *  in a row.  A migration copies the cells, so it costs one pass over the
+ *  ocean.  Like OffHeapOcean, timeStep() advances this ocean in place and
+ *  returns it.
+ */
+
+public class AdaptiveOcean implements OceanBackend, Closeable {
+
+    public enum Kind { DENSE, PACKED, SPARSE, RUN_LENGTH }
+
+    public final static double SPARSE_BELOW = 0.02;
+    public final static double RUN_LENGTH_BELOW = 0.05;
+    public final static int PATIENCE = 4;
+
+    private final static int SAMPLE_ROWS = 8;
+
+    private final RuleTable rules;
+    private final double sparseBelow;
+    private final double runLengthBelow;
+    private final int patience;
+    private OceanBackend backend;
+    private Kind kind;
+    private Kind preferred;
+    private int streak;
+    private long migrations;
+    private long births;
+    private long predation;
+    private long starvations;
+
+    /**
+     *  AdaptiveOcean() starts from "sea" with the default thresholds, and
+     *  moves it to the preferred backend at once.
+     *  @param sea is the starting ocean, which the adaptive ocean takes over.
+     */
+
+    public AdaptiveOcean(Ocean sea) {
+	this(sea, sea.rules(), SPARSE_BELOW, RUN_LENGTH_BELOW, PATIENCE);
+    }
+
+    /**
+     *  AdaptiveOcean() starts from "sea", moving it to the preferred backend
+     *  at once.
+     *  @param sea is the starting ocean, which the adaptive ocean takes over.
+     *  @param rules is the compiled rule table, for sea.starveTime().
+     *  @param sparseBelow is the density below which SPARSE is preferred.
+     *  @param runLengthBelow is the number of runs per cell below which
+     *         RUN_LENGTH is preferred.
+     *  @param patience is the number of timesteps another backend must be
+     *         preferred before the ocean migrates to it.
+     */
+
+    public AdaptiveOcean(OceanBackend sea, RuleTable rules, double sparseBelow,
+			 double runLengthBelow, int patience) {
+	if ((sparseBelow < 0) || (runLengthBelow < 0) || (patience <= 0)) {
+	    System.out.println("Error: invalid adaptive parameters");
+	    System.exit(0);
+	} if (rules.starveTime() != sea.starveTime()) {
+	    System.out.println("Error: rules do not match the starve time");
+	    System.exit(0);
+	}
+	this.rules = rules;
+	this.sparseBelow = sparseBelow;
+	this.runLengthBelow = runLengthBelow;
+	this.patience = patience;
+	backend = sea;
+	kind = kindOf(sea);
+	preferred = kind;
+	Kind start = choose();
+	if (start != kind) {
+	    migrate(start);
+	}
+    }
+
+    private static Kind kindOf(OceanBackend sea) {
+	if (sea instanceof OffHeapOcean) {
+	    return Kind.PACKED;
+	} else if (sea instanceof SparseOcean) {
+	    return Kind.SPARSE;
+	} else if (sea instanceof RunLengthOcean) {
+	    return Kind.RUN_LENGTH;
+	}
+	return Kind.DENSE;
+    }
+
+    /**
+     *  kind() returns the kind of backend the ocean is on now.
+     */
+
+    public Kind kind() {
+	return kind;
+    }
+
+    /**
+     *  backend() returns the backend the ocean is on now.
+     */
+
+    public OceanBackend backend() {
+	return backend;
+    }
+
+    /**
+     *  rules() returns the rule table the ocean evolves by.
+     */
+
+    public RuleTable rules() {
+	return rules;
+    }
+
+    /**
+     *  migrations() returns the number of times the ocean has changed
+     *  backend.
+     */
+
+    public long migrations() {
+	return migrations;
+    }
+
+    public int width() {
+	return backend.width();
+    }
+
+    public int height() {
+	return backend.height();
+    }
+
+    public int starveTime() {
+	return backend.starveTime();
+    }
+
+    public long generation() {
+	return backend.generation();
+    }
+
+    public long stateHash() {
+	return backend.stateHash();
+    }
+
+    public long fishCount() {
+	return backend.fishCount();
+    }
+
+    public long sharkCount() {
+	return backend.sharkCount();
+    }
+
+    public long births() {
+	return births;
+    }
+
+    public long predation() {
+	return predation;
+    }
+
+    public long starvations() {
+	return starvations;
+    }
+
+    public int cellContents(int x, int y) {
+	return backend.cellContents(x, y);
+    }
+
+    public int sharkFeeding(int x, int y) {
+	return backend.sharkFeeding(x, y);
+    }
+
+    /**
+     *  timeStep() advances the ocean one timestep on its current backend,
+     *  then samples it and migrates if another backend has been preferred
+     *  for long enough.
+     *  @return this ocean, now one generation later.
+     */
+
+    public AdaptiveOcean timeStep() {
+	backend = backend.timeStep();
+	births = backend.births();
+	predation = backend.predation();
+	starvations = backend.starvations();
+	Kind choice = choose();
+	if (choice == kind) {
+	    streak = 0;
+	} else {
+	    streak = (choice == preferred) ? streak + 1 : 1;
+	    if (streak >= patience) {
+		migrate(choice);
+	    }
+	}
+	preferred = choice;
+	return this;
+    }
+
+    // returns the backend preferred for the current state.
+    private Kind choose() {
+	if ((backend instanceof Ocean) && !((Ocean) backend).neighborhood().isStandard()) {
+	    // only Ocean steps other neighborhoods.
+	    return Kind.DENSE;
+	}
+	boolean packable = backend.starveTime() <= OffHeapOcean.MAX_STARVE_TIME;
+	double cells = (double) backend.width() * backend.height();
+	double density = (backend.fishCount() + backend.sharkCount()) / cells;
+	if (rules.quiescent() && (density < sparseBelow)) {
+	    return Kind.SPARSE;
+	}
+	if (packable && (runsPerCell() < runLengthBelow)) {
+	    return Kind.RUN_LENGTH;
+	}
+	if (packable && (rules == RuleTable.standard(backend.starveTime()))) {
+	    return Kind.PACKED;
+	}
+	return Kind.DENSE;
+    }
+
+    // returns the number of runs per cell, estimated from SAMPLE_ROWS evenly
+    // spaced rows (shifted each generation) unless the backend knows it.
+    private double runsPerCell() {
+	int width = backend.width();
+	int height = backend.height();
+	if (backend instanceof RunLengthOcean) {
+	    return ((RunLengthOcean) backend).runs() / ((double) width * height);
+	}
+	int rows = Math.min(SAMPLE_ROWS, height);
+	long offset = backend.generation() % Math.max(1, height / rows);
+	long runs = 0;
+	for (int k = 0; k < rows; k++) {
+	    int y = (int) ((offset + (long) k * height / rows) % height);
+	    int last = -1;
+	    for (int x = 0; x < width; x++) {
+		int contents = backend.cellContents(x, y);
+		if (contents != last) {
+		    runs++;
+		    last = contents;
+		}
+	    }
+	}
+	return runs / ((double) rows * width);
+    }
+
+    // copies the ocean to a backend of kind "target" and releases the old one.
+    private void migrate(Kind target) {
+	OceanBackend old = backend;
+	switch (target) {
+	 case PACKED:
+	    backend = OffHeapOcean.copyOf(old);
+	    break;
+	 case SPARSE:
+	    backend = SparseOcean.copyOf(old, rules);
+	    break;
+	 case RUN_LENGTH:
+	    backend = RunLengthOcean.copyOf(old, rules);
+	    break;
+	 default:
+	    backend = Ocean.copyOf(old, rules);
+	    break;
+	}
+	kind = target;
+	streak = 0;
+	migrations++;
+	if (old instanceof Closeable) {
+	    try {
+		((Closeable) old).close();
+	    } catch (IOException e) {
+		// the old backend is no longer used.
+	    }
+	}
+    }
+
+    /**
+     *  toOcean() returns the ocean as an Ocean, in the same generation.
+     */
+
+    public Ocean toOcean() {
+	return backend.toOcean();
+    }
+
+    /**
+     *  close() releases the current backend.
+     */
+
+    public void close() throws IOException {
+	if (backend instanceof Closeable) {
+	    ((Closeable) backend).close();
+	}
+    }
+}
@@ -0,0 +1,619 @@
+/* BroadcastServer.java */
+
+package sharkfish;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *  The BroadcastServer class streams a running simulation to any number of
+ *  viewers over WebSocket.  It is a small embedded HTTP server: GET / serves
+ *  a viewer page, and GET /stream upgrades to a WebSocket on which the
+ *  server sends one binary message per published generation.
+ *
+ *  publish() encodes each generation exactly once, either as a keyframe (its
+ *  runs of cells of one type, as in a RunLengthEncoding) or as a delta (the
+ *  cells that changed since the previous generation), and wraps it in a
+ *  WebSocket frame once.  Server frames are not masked, so the same bytes go
+ *  to every viewer.
+ *
+ *  Every viewer has its own bounded queue and sender thread.  A viewer that
+ *  falls behind far enough to fill its queue loses everything queued, skips
+ *  deltas until the next keyframe, and asks publish() to make that keyframe
+ *  the next generation.  New viewers wait for a keyframe the same way.
+ *
+ *  Each message is big-endian:  a byte that is KEYFRAME or DELTA, the
+ *  generation (long), the width and height (ints), and a count (int).  A
+ *  keyframe is followed by "count" runs, each a cell type (byte) and a run
+ *  length (int), covering the ocean row by row.  A delta is followed by
+ *  "count" changes, each a cell index y * width + x (int) and its new type
+ *  (byte).  Cell types are Ocean.EMPTY, Ocean.SHARK and Ocean.FISH.
+ */
+
+public class BroadcastServer implements Closeable {
+
+    public final static byte KEYFRAME = 0;
+    public final static byte DELTA = 1;
+
+    private final static String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private final static int MAX_REQUEST = 8192;
+
+    /**
+     *  Viewer is one connected WebSocket client.
+     */
+
+    private class Viewer {
+	final Socket socket;
+	final OutputStream out;
+	final ArrayDeque<byte[]> queue = new ArrayDeque<byte[]>();
+	boolean awaitingKeyframe = true;
+	boolean closed;
+	long dropped;
+
+	Viewer(Socket socket) throws IOException {
+	    this.socket = socket;
+	    this.out = socket.getOutputStream();
+	}
+
+	// queues a frame, or resynchronizes on the next keyframe if the queue
+	// is full.
+	synchronized void deliver(byte[] frame, boolean keyframe) {
+	    if (closed) {
+		return;
+	    }
+	    if (keyframe) {
+		awaitingKeyframe = false;
+	    } else if (awaitingKeyframe) {
+		return;
+	    }
+	    if (queue.size() >= queueCapacity) {
+		dropped = dropped + queue.size();
+		queue.clear();
+		if (!keyframe) {
+		    dropped++;
+		    awaitingKeyframe = true;
+		    keyframeWanted.set(true);
+		    return;
+		}
+	    }
+	    queue.addLast(frame);
+	    notifyAll();
+	}
+
+	synchronized byte[] take() throws InterruptedException {
+	    while (queue.isEmpty() && !closed) {
+		wait();
+	    }
+	    return closed ? null : queue.pollFirst();
+	}
+
+	void send() {
+	    try {
+		byte[] frame;
+		while ((frame = take()) != null) {
+		    out.write(frame);
+		    out.flush();
+		}
+	    } catch (IOException e) {
+		// the viewer went away; disconnect() below cleans up.
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    disconnect(this);
+	}
+    }
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final int keyframeInterval;
+    private final int queueCapacity;
+    private final List<Viewer> viewers = new CopyOnWriteArrayList<Viewer>();
+    private final AtomicBoolean keyframeWanted = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private byte[] previous;
+    private int previousWidth;
+    private int previousHeight;
+    private int sinceKeyframe;
+    private long keyframes;
+    private long deltas;
+    private long encodedBytes;
+
+    /**
+     *  BroadcastServer() starts a server listening on "port" of every local
+     *  address.
+     *  @param port is the TCP port, or 0 for any free port (see port()).
+     *  @param keyframeInterval is the largest number of generations between
+     *         keyframes.
+     *  @param queueCapacity is the number of messages queued per viewer.
+     */
+
+    public BroadcastServer(int port, int keyframeInterval, int queueCapacity)
+	throws IOException {
+	this(new InetSocketAddress(port), keyframeInterval, queueCapacity);
+    }
+
+    /**
+     *  BroadcastServer() starts a server listening on "address".
+     *  @param address is the address to bind, e.g. a loopback address for
+     *         local viewers only.
+     *  @param keyframeInterval is the largest number of generations between
+     *         keyframes.
+     *  @param queueCapacity is the number of messages queued per viewer.
+     */
+
+    public BroadcastServer(InetSocketAddress address, int keyframeInterval,
+			   int queueCapacity) throws IOException {
+	if ((keyframeInterval <= 0) || (queueCapacity <= 0)) {
+	    System.out.println("Error: invalid broadcast parameters");
+	    System.exit(0);
+	}
+	this.keyframeInterval = keyframeInterval;
+	this.queueCapacity = queueCapacity;
+	server = new ServerSocket();
+	server.bind(address);
+	acceptor = new Thread(this::accept, "broadcast-accept");
+	acceptor.setDaemon(true);
+	acceptor.start();
+    }
+
+    /**
+     *  port() returns the port the server listens on.
+     */
+
+    public int port() {
+	return server.getLocalPort();
+    }
+
+    /**
+     *  viewers() returns the number of connected WebSocket viewers.
+     */
+
+    public int viewers() {
+	return viewers.size();
+    }
+
+    /**
+     *  keyframes() returns the number of keyframes encoded so far.
+     */
+
+    public synchronized long keyframes() {
+	return keyframes;
+    }
+
+    /**
+     *  deltas() returns the number of deltas encoded so far.
+     */
+
+    public synchronized long deltas() {
+	return deltas;
+    }
+
+    /**
+     *  encodedBytes() returns the total size of the frames encoded so far,
+     *  counting each frame once however many viewers it was sent to.
+     */
+
+    public synchronized long encodedBytes() {
+	return encodedBytes;
+    }
+
+    /**
+     *  dropped() returns the number of messages discarded from the queues
+     *  of viewers that fell behind.
+     */
+
+    public long dropped() {
+	long n = 0;
+	for (Viewer v : viewers) {
+	    synchronized (v) {
+		n = n + v.dropped;
+	    }
+	}
+	return n;
+    }
+
+    /**
+     *  publish() encodes the current generation of "sea" once and queues it
+     *  for every connected viewer.  It sends a keyframe when the interval is
+     *  up, when the size of the ocean changes, when a viewer is waiting for
+     *  one, or when a delta would not be smaller; otherwise it sends a delta.
+     *  @param sea is the generation to publish.
+     */
+
+    public synchronized void publish(Ocean sea) throws IOException {
+	int width = sea.width();
+	int height = sea.height();
+	byte[] contents = new byte[width * height];
+	sea.cellContents(contents);
+
+	// cleared first, so a request made while this frame is encoded is kept
+	// for the next one.
+	boolean wanted = keyframeWanted.getAndSet(false);
+	boolean keyframe = (previous == null) || (width != previousWidth)
+	    || (height != previousHeight) || (sinceKeyframe + 1 >= keyframeInterval)
+	    || wanted;
+	int changes = 0;
+	if (!keyframe) {
+	    for (int k = 0; k < contents.length; k++) {
+		if (contents[k] != previous[k]) {
+		    changes++;
+		}
+	    }
+	    // a delta costs five bytes per change; a keyframe at most five
+	    // per cell, usually far fewer.
+	    keyframe = 5 * changes >= contents.length;
+	}
+
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream data = new DataOutputStream(bytes);
+	data.writeByte(keyframe ? KEYFRAME : DELTA);
+	data.writeLong(sea.generation());
+	data.writeInt(width);
+	data.writeInt(height);
+	if (keyframe) {
+	    writeRuns(data, contents);
+	    keyframes++;
+	    sinceKeyframe = 0;
+	} else {
+	    data.writeInt(changes);
+	    for (int k = 0; k < contents.length; k++) {
+		if (contents[k] != previous[k]) {
+		    data.writeInt(k);
+		    data.writeByte(contents[k]);
+		}
+	    }
+	    deltas++;
+	    sinceKeyframe++;
+	}
+	data.flush();
+	byte[] frame = frame(bytes.toByteArray());
+	encodedBytes = encodedBytes + frame.length;
+	previous = contents;
+	previousWidth = width;
+	previousHeight = height;
+
+	for (Viewer v : viewers) {
+	    v.deliver(frame, keyframe);
+	}
+    }
+
+    // writes the runs of cells of one type in "contents", preceded by their
+    // count.
+    private static void writeRuns(DataOutputStream data, byte[] contents)
+	throws IOException {
+	ByteArrayOutputStream runs = new ByteArrayOutputStream();
+	DataOutputStream out = new DataOutputStream(runs);
+	int count = 0;
+	int n = 0;
+	while (n < contents.length) {
+	    int length = 1;
+	    while ((n + length < contents.length) && (contents[n + length] == contents[n])) {
+		length++;
+	    }
+	    out.writeByte(contents[n]);
+	    out.writeInt(length);
+	    count++;
+	    n = n + length;
+	}
+	out.flush();
+	data.writeInt(count);
+	runs.writeTo(data);
+    }
+
+    // wraps "payload" in an unmasked, final, binary WebSocket frame.
+    private static byte[] frame(byte[] payload) {
+	int n = payload.length;
+	int header = (n < 126) ? 2 : (n < 65536) ? 4 : 10;
+	byte[] frame = new byte[header + n];
+	frame[0] = (byte) 0x82;
+	if (n < 126) {
+	    frame[1] = (byte) n;
+	} else if (n < 65536) {
+	    frame[1] = 126;
+	    frame[2] = (byte) (n >>> 8);
+	    frame[3] = (byte) n;
+	} else {
+	    frame[1] = 127;
+	    for (int k = 0; k < 8; k++) {
+		frame[2 + k] = (byte) ((long) n >>> (56 - 8 * k));
+	    }
+	}
+	System.arraycopy(payload, 0, frame, header, n);
+	return frame;
+    }
+
+    private void accept() {
+	while (!closed) {
+	    Socket socket;
+	    try {
+		socket = server.accept();
+	    } catch (IOException e) {
+		return;
+	    }
+	    Thread t = new Thread(() -> serve(socket), "broadcast-connection");
+	    t.setDaemon(true);
+	    t.start();
+	}
+    }
+
+    // answers one HTTP request; a WebSocket upgrade keeps the connection and
+    // this thread reads from the viewer until it closes.
+    private void serve(Socket socket) {
+	try {
+	    socket.setTcpNoDelay(true);
+	    InputStream in = socket.getInputStream();
+	    Map<String, String> headers = new HashMap<String, String>();
+	    String request = readRequest(in, headers);
+	    String[] parts = (request == null) ? new String[0] : request.split(" ");
+	    String path = (parts.length >= 2) ? parts[1] : "";
+	    String key = headers.get("sec-websocket-key");
+	    if ((parts.length < 2) || !parts[0].equals("GET")) {
+		respond(socket, "405 Method Not Allowed", "text/plain", "Method not allowed\n");
+	    } else if (path.equals("/stream") && (key != null)
+		       && "websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+		upgrade(socket, in, key);
+		return;
+	    } else if (path.equals("/")) {
+		respond(socket, "200 OK", "text/html; charset=utf-8", VIEWER_PAGE);
+	    } else {
+		respond(socket, "404 Not Found", "text/plain", "Not found\n");
+	    }
+	} catch (IOException e) {
+	    // nothing to report to a client that sent a bad request.
+	}
+	try {
+	    socket.close();
+	} catch (IOException e) {
+	}
+    }
+
+    // reads the request line and headers (names lower-cased); returns the
+    // request line, or null if the connection ended first.
+    private static String readRequest(InputStream in, Map<String, String> headers)
+	throws IOException {
+	ByteArrayOutputStream line = new ByteArrayOutputStream();
+	String request = null;
+	int total = 0;
+	int c;
+	while ((c = in.read()) != -1) {
+	    if (++total > MAX_REQUEST) {
+		throw new IOException("request too large");
+	    }
+	    if (c != '\n') {
+		if (c != '\r') {
+		    line.write(c);
+		}
+		continue;
+	    }
+	    String s = line.toString(StandardCharsets.ISO_8859_1);
+	    line.reset();
+	    if (request == null) {
+		request = s;
+	    } else if (s.isEmpty()) {
+		return request;
+	    } else {
+		int colon = s.indexOf(':');
+		if (colon > 0) {
+		    headers.put(s.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+				s.substring(colon + 1).trim());
+		}
+	    }
+	}
+	return null;
+    }
+
+    private static void respond(Socket socket, String status, String type, String body)
+	throws IOException {
+	byte[] content = body.getBytes(StandardCharsets.UTF_8);
+	String head = "HTTP/1.1 " + status + "\r\n"
+	    + "Content-Type: " + type + "\r\n"
+	    + "Content-Length: " + content.length + "\r\n"
+	    + "Connection: close\r\n\r\n";
+	OutputStream out = socket.getOutputStream();
+	out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+	out.write(content);
+	out.flush();
+    }
+
+    private void upgrade(Socket socket, InputStream in, String key) throws IOException {
+	String accept;
+	try {
+	    MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+	    byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+	    accept = Base64.getEncoder().encodeToString(digest);
+	} catch (NoSuchAlgorithmException e) {
+	    throw new IOException(e);
+	}
+	String head = "HTTP/1.1 101 Switching Protocols\r\n"
+	    + "Upgrade: websocket\r\n"
+	    + "Connection: Upgrade\r\n"
+	    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n";
+	Viewer v = new Viewer(socket);
+	v.out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+	v.out.flush();
+	viewers.add(v);
+	keyframeWanted.set(true);
+	if (closed) {
+	    disconnect(v);
+	    return;
+	}
+	Thread sender = new Thread(v::send, "broadcast-sender");
+	sender.setDaemon(true);
+	sender.start();
+	try {
+	    readUntilClosed(in);
+	} catch (IOException e) {
+	    // a dropped connection ends the session like a close frame.
+	}
+	disconnect(v);
+    }
+
+    // consumes the frames a viewer sends, which the server ignores, until
+    // the viewer sends a close frame or the connection ends.
+    private static void readUntilClosed(InputStream in) throws IOException {
+	while (true) {
+	    int b0 = in.read();
+	    int b1 = in.read();
+	    if ((b0 == -1) || (b1 == -1)) {
+		return;
+	    }
+	    long length = b1 & 0x7f;
+	    if (length == 126) {
+		length = (readByte(in) << 8) | readByte(in);
+	    } else if (length == 127) {
+		length = 0;
+		for (int k = 0; k < 8; k++) {
+		    length = (length << 8) | readByte(in);
+		}
+	    }
+	    if ((b1 & 0x80) != 0) {
+		length = length + 4;
+	    }
+	    if ((b0 & 0x0f) == 0x8) {
+		return;
+	    }
+	    while (length > 0) {
+		long skipped = in.skip(length);
+		if (skipped <= 0) {
+		    readByte(in);
+		    skipped = 1;
+		}
+		length = length - skipped;
+	    }
+	}
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+	int b = in.read();
+	if (b == -1) {
+	    throw new EOFException();
+	}
+	return b;
+    }
+
+    private void disconnect(Viewer v) {
+	synchronized (v) {
+	    v.closed = true;
+	    v.queue.clear();
+	    v.notifyAll();
+	}
+	viewers.remove(v);
+	try {
+	    v.socket.close();
+	} catch (IOException e) {
+	}
+    }
+
+    /**
+     *  close() stops accepting connections and disconnects every viewer.
+     */
+
+    public void close() throws IOException {
+	closed = true;
+	server.close();
+	for (Viewer v : viewers) {
+	    disconnect(v);
+	}
+	try {
+	    acceptor.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     *  main() runs a seeded simulation and broadcasts every generation.
+     *  Usage: java sharkfish.BroadcastServer port width height starveTime
+     *  [delayMs]
+     */
+
+    public static void main(String[] argv) throws IOException, InterruptedException {
+	if (argv.length < 4) {
+	    System.out.println("Usage: java sharkfish.BroadcastServer port width height starveTime [delayMs]");
+	    System.exit(0);
+	}
+	int port = Integer.parseInt(argv[0]);
+	int width = Integer.parseInt(argv[1]);
+	int height = Integer.parseInt(argv[2]);
+	int starveTime = Integer.parseInt(argv[3]);
+	int delay = (argv.length > 4) ? Integer.parseInt(argv[4]) : 100;
+	Ocean sea = Ocean.seeded(width, height, starveTime, 0.3, 0.1, System.nanoTime());
+	try (BroadcastServer server = new BroadcastServer(port, 100, 32)) {
+	    System.out.println("Serving on http://localhost:" + server.port() + "/");
+	    while (true) {
+		server.publish(sea);
+		Thread.sleep(delay);
+		sea = sea.timeStep();
+	    }
+	}
+    }
+
+    private final static String VIEWER_PAGE = """
+	<!DOCTYPE html>
+	<html><head><title>SharkFishSim</title>
+	<style>canvas { image-rendering: pixelated; width: 100%; }</style>
+	</head><body>
+	<div id="status">connecting</div>
+	<canvas id="ocean"></canvas>
+	<script>
+	const canvas = document.getElementById("ocean");
+	const ctx = canvas.getContext("2d");
+	const status = document.getElementById("status");
+	const colors = [[255, 255, 255], [255, 0, 0], [0, 255, 0]];
+	let cells = null, image = null;
+	function paint(k) {
+	  const c = colors[cells[k]];
+	  image.data[4 * k] = c[0]; image.data[4 * k + 1] = c[1];
+	  image.data[4 * k + 2] = c[2]; image.data[4 * k + 3] = 255;
+	}
+	const ws = new WebSocket("ws://" + location.host + "/stream");
+	ws.binaryType = "arraybuffer";
+	ws.onclose = () => { status.textContent = "disconnected"; };
+	ws.onmessage = (e) => {
+	  const d = new DataView(e.data);
+	  const kind = d.getUint8(0), gen = d.getBigInt64(1);
+	  const w = d.getInt32(9), h = d.getInt32(13), n = d.getInt32(17);
+	  let p = 21;
+	  if (kind === 0) {
+	    if (!cells || canvas.width !== w || canvas.height !== h) {
+	      canvas.width = w; canvas.height = h;
+	      cells = new Uint8Array(w * h); image = ctx.createImageData(w, h);
+	    }
+	    let k = 0;
+	    for (let r = 0; r < n; r++, p += 5) {
+	      const t = d.getUint8(p), len = d.getInt32(p + 1);
+	      for (let end = k + len; k < end; k++) { cells[k] = t; paint(k); }
+	    }
+	  } else if (cells) {
+	    for (let r = 0; r < n; r++, p += 5) {
+	      const k = d.getInt32(p);
+	      cells[k] = d.getUint8(p + 4); paint(k);
+	    }
+	  }
+	  if (cells) { ctx.putImageData(image, 0, 0); }
+	  status.textContent = "generation " + gen;
+	};
+	</script>
+	</body></html>
+	""";
+}
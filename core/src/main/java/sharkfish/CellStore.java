@@ -0,0 +1,137 @@
+/* CellStore.java */
+
+package sharkfish;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *  CellStore is a class used internally by the off-heap oceans.  It is an
+ *  array of bytes, indexed by long, that lives outside the Java heap: either
+ *  in direct buffers or in a memory-mapped region of a file.  A single
+ *  ByteBuffer holds less than 2^31 bytes, so the store is split into chunks
+ *  of 2^30 bytes.  Bulk transfers may span chunk boundaries.
+ *
+ *  Absolute get and put operations do not change any buffer state, so
+ *  threads may use one store concurrently as long as they touch disjoint
+ *  ranges; view() gives each thread its own buffer objects regardless.
+ */
+
+final class CellStore {
+
+    private final static int CHUNK_BITS = 30;
+    private final static int CHUNK = 1 << CHUNK_BITS;
+    private final static long MASK = CHUNK - 1;
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+
+    private CellStore(ByteBuffer[] chunks, long size) {
+	this.chunks = chunks;
+	this.size = size;
+    }
+
+    private static int chunkCount(long size) {
+	return (int) ((size + CHUNK - 1) >>> CHUNK_BITS);
+    }
+
+    /**
+     *  allocate() returns a zeroed store of "size" bytes in direct memory.
+     */
+
+    static CellStore allocate(long size) {
+	ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+	for (int k = 0; k < chunks.length; k++) {
+	    chunks[k] = ByteBuffer.allocateDirect((int) Math.min(CHUNK, size - ((long) k << CHUNK_BITS)));
+	}
+	return new CellStore(chunks, size);
+    }
+
+    /**
+     *  map() returns a store of "size" bytes mapped read-write from "channel"
+     *  starting at "offset".  The file grows as needed; new bytes are zero.
+     */
+
+    static CellStore map(FileChannel channel, long offset, long size) throws IOException {
+	ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+	for (int k = 0; k < chunks.length; k++) {
+	    long start = (long) k << CHUNK_BITS;
+	    chunks[k] = channel.map(FileChannel.MapMode.READ_WRITE, offset + start,
+				    Math.min(CHUNK, size - start));
+	}
+	return new CellStore(chunks, size);
+    }
+
+    /**
+     *  view() returns a store over the same memory with its own buffer
+     *  objects.
+     */
+
+    CellStore view() {
+	ByteBuffer[] copies = new ByteBuffer[chunks.length];
+	for (int k = 0; k < chunks.length; k++) {
+	    copies[k] = chunks[k].duplicate();
+	}
+	return new CellStore(copies, size);
+    }
+
+    long size() {
+	return size;
+    }
+
+    int get(long i) {
+	return Byte.toUnsignedInt(chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & MASK)));
+    }
+
+    void set(long i, int value) {
+	chunks[(int) (i >>> CHUNK_BITS)].put((int) (i & MASK), (byte) value);
+    }
+
+    /**
+     *  get() (with three parameters) copies "length" bytes starting at index i
+     *  into dst.
+     */
+
+    void get(long i, byte[] dst, int length) {
+	int done = 0;
+	while (done < length) {
+	    long at = i + done;
+	    int offset = (int) (at & MASK);
+	    ByteBuffer chunk = chunks[(int) (at >>> CHUNK_BITS)];
+	    int n = Math.min(length - done, chunk.capacity() - offset);
+	    chunk.get(offset, dst, done, n);
+	    done = done + n;
+	}
+    }
+
+    /**
+     *  put() copies "length" bytes from src into the store starting at index i.
+     */
+
+    void put(long i, byte[] src, int length) {
+	int done = 0;
+	while (done < length) {
+	    long at = i + done;
+	    int offset = (int) (at & MASK);
+	    ByteBuffer chunk = chunks[(int) (at >>> CHUNK_BITS)];
+	    int n = Math.min(length - done, chunk.capacity() - offset);
+	    chunk.put(offset, src, done, n);
+	    done = done + n;
+	}
+    }
+
+    /**
+     *  force() writes any changes of a mapped store back to its file; it does
+     *  nothing for a direct store.
+     */
+
+    void force() {
+	for (ByteBuffer chunk : chunks) {
+	    if (chunk instanceof MappedByteBuffer) {
+		((MappedByteBuffer) chunk).force();
+	    }
+	}
+    }
+}
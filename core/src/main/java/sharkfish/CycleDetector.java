@@ -0,0 +1,186 @@
+/* CycleDetector.java */
+
+package sharkfish;
+
+/**
+ *  The CycleDetector class watches a sequence of Ocean generations and
+ *  notices when the ocean settles down.  It keeps the state hashes of the
+ *  most recent generations in a small table; when a new generation hashes
+ *  the same as one of them, the simulation has entered a cycle, since
+ *  timeStep() depends on nothing but the current state.  A cycle of period
+ *  one is a fixed point, and a fixed point with hash zero is extinction.
+ *
+ *  Detection relies on 64-bit Zobrist hashes, so two different states are
+ *  mistaken for one another with probability about 2^-64 per comparison.
+ *
+ *  Typical use in a sweep:
+ *
+ *         CycleDetector detector = new CycleDetector(64);
+ *         while (!detector.observe(sea) && sea.generation() < limit) {
+ *           sea = sea.timeStep();
+ *         }
+ */
+
+public class CycleDetector {
+
+    private long[] hashes;
+    private long[] generations;
+    private int next;
+    private int count;
+    private long period;
+    private long cycleStart;
+    private long lastHash;
+
+    /**
+     *  CycleDetector() creates a detector that remembers the last "window"
+     *  generations, and therefore detects periods of up to "window".
+     *  @param window is the number of recent hashes to keep.
+     */
+
+    public CycleDetector(int window) {
+	if (window <= 0) {
+	    System.out.println("Error: invalid cycle detector window");
+	    System.exit(0);
+	}
+	hashes = new long[window];
+	generations = new long[window];
+    }
+
+    /**
+     *  observe() records one generation.  Generations must be observed in
+     *  increasing order, normally one after another.  Once a cycle has been
+     *  found, further calls return true without recording anything.
+     *  @param sea is the generation to record.
+     *  @return true if the simulation is now known to be in a cycle.
+     */
+
+    public boolean observe(Ocean sea) {
+	if (period > 0) {
+	    return true;
+	}
+	long h = sea.stateHash();
+	long g = sea.generation();
+	for (int k = 0; k < count; k++) {
+	    if (hashes[k] == h) {
+		period = g - generations[k];
+		cycleStart = generations[k];
+		lastHash = h;
+		return true;
+	    }
+	}
+	hashes[next] = h;
+	generations[next] = g;
+	next = (next + 1) % hashes.length;
+	if (count < hashes.length) {
+	    count++;
+	}
+	return false;
+    }
+
+    /**
+     *  period() returns the period of the detected cycle, or zero if none has
+     *  been detected yet.
+     */
+
+    public long period() {
+	return period;
+    }
+
+    /**
+     *  cycleStart() returns the first generation seen to be part of the
+     *  detected cycle, or zero if none has been detected yet.
+     */
+
+    public long cycleStart() {
+	return cycleStart;
+    }
+
+    /**
+     *  isFixedPoint() returns true if the ocean is known to have stopped
+     *  changing.
+     */
+
+    public boolean isFixedPoint() {
+	return period == 1;
+    }
+
+    /**
+     *  isExtinct() returns true if the ocean is known to have become, and
+     *  stayed, empty.
+     */
+
+    public boolean isExtinct() {
+	return period == 1 && lastHash == 0;
+    }
+
+    /**
+     *  reset() forgets every observed generation and any detected cycle.
+     */
+
+    public void reset() {
+	next = 0;
+	count = 0;
+	period = 0;
+	cycleStart = 0;
+	lastHash = 0;
+    }
+
+    /**
+     *  advance() steps "sea" until it reaches generation "target", observing
+     *  every generation on the way.  Once a cycle is detected, the remaining
+     *  generations are skipped: only (target - current) mod period further
+     *  steps are taken, and the result is labelled as generation "target".
+     *  If "sea" does not carry on from the generations observed so far (it
+     *  is another ocean, or not the next generation, or not in the cycle
+     *  found), advance() calls reset() first, so a cycle found in one ocean
+     *  is never applied to another.
+     *  @param sea is the ocean to start from.
+     *  @param target is the generation to reach; it must not be smaller than
+     *         sea.generation().
+     *  @return an ocean in the state of generation "target".
+     */
+
+    public Ocean advance(Ocean sea, long target) {
+	if (target < sea.generation()) {
+	    System.out.println("Error: target generation already passed");
+	    System.exit(0);
+	}
+	if (!continues(sea)) {
+	    reset();
+	}
+	while (sea.generation() < target) {
+	    if (observe(sea)) {
+		long remaining = (target - sea.generation()) % period;
+		for (long k = 0; k < remaining; k++) {
+		    sea = sea.timeStep();
+		}
+		return sea.relabeled(target);
+	    }
+	    sea = sea.timeStep();
+	}
+	return sea;
+    }
+
+    // returns true if "sea" carries on from the generations observed: the
+    // generation after the last one observed or, once a cycle is known, a
+    // generation of it with the hash the cycle gives that generation.
+    private boolean continues(Ocean sea) {
+	if (count == 0) {
+	    return true;
+	}
+	long g = sea.generation();
+	if (period == 0) {
+	    return g == generations[(next + hashes.length - 1) % hashes.length] + 1;
+	}
+	if (g < cycleStart) {
+	    return false;
+	}
+	long same = cycleStart + (g - cycleStart) % period;
+	for (int k = 0; k < count; k++) {
+	    if (generations[k] == same) {
+		return hashes[k] == sea.stateHash();
+	    }
+	}
+	return false;
+    }
+}
@@ -0,0 +1,40 @@
+/* EncodeEvent.java */
+
+package sharkfish;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  EncodeEvent is the JFR event committed for each RunLengthEncoding(Ocean)
+ *  and RunLengthEncoding.update() while a recording has it enabled.  The
+ *  event duration is the encode latency.
+ */
+
+@Name("sharkfish.Encode")
+@Label("Run-Length Encode")
+@Category("SharkFishSim")
+@Description("One RunLengthEncoding of an Ocean")
+@StackTrace(false)
+class EncodeEvent extends jdk.jfr.Event {
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Runs")
+    int runs;
+
+    @Label("Incremental")
+    boolean incremental;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
@@ -0,0 +1,720 @@
+/* EngineVerifier.java */
+
+package sharkfish;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ *  The EngineVerifier class checks every engine in the package against a
+ *  reference, generation by generation.  The reference is the plainest
+ *  possible stepper: an array of cell states, numbered as by
+ *  OceanNode.state(), stepped by applying the trial's Rule (Ocean.transition()
+ *  for the rules of README) to each cell with its neighbors found by
+ *  Ocean.wrap(), or by Ocean.surroundings() in other neighborhoods.  It
+ *  shares none of the engines' tiles, rule tables, packed rows or run lists.
+ *
+ *  Each trial draws a width and height (including oceans one and two cells
+ *  across, where a cell is its own neighbor), a starveTime, densities and a
+ *  hunger for every shark from a master seed; some trials also use a rule
+ *  variant compiled from a Rule, or a wider Moore or von Neumann
+ *  neighborhood.  A trial loads the same ocean into the reference and into
+ *  every engine that supports its rules and neighborhood, and steps them
+ *  side by side, comparing state hashes (see Ocean.stateHash(), which covers
+ *  shark hunger) after every timestep.  On the first divergence it prints
+ *  how to reproduce it and the cells that differ, and stops.  The run is
+ *  deterministic in the master seed, needs no display or network beyond
+ *  loopback, and exits with status 1 on a divergence, so it can gate a
+ *  release.
+ *
+ *  The engines also step one larger ocean, verified the same way, and the
+ *  verifier prints a table of each engine's throughput and the bytes it
+ *  allocated per timestep, counted over all threads.  The run-length
+ *  entries step an Ocean and encode every generation, from scratch or with
+ *  RunLengthEncoding.update(), and are checked by decoding.
+ *
+ *  From the command line:
+ *
+ *         java sharkfish.EngineVerifier trials generations size seed
+ */
+
+public class EngineVerifier {
+
+    /**
+     *  The variations an engine may support beyond the rules of README in the
+     *  standard neighborhood.
+     */
+
+    private final static int RULES = 1;
+    private final static int NEIGHBORHOODS = 2;
+
+    /**
+     *  VARIANT is a rule variant that, unlike the rules of README, tells
+     *  apart every number of neighbors: a fish is born among exactly three
+     *  fish, a crowded fish dies, and a shark eats only where fish outnumber
+     *  sharks.
+     */
+
+    final static RuleTable.Rule VARIANT = (state, fish, sharks, starveTime) -> {
+	if (state == 0) {
+	    return (fish == 3) ? 1 : ((sharks == 3) && (fish > 0)) ? 2 : 0;
+	}
+	if (state == 1) {
+	    return (sharks > fish) ? 2 : (fish >= 6) ? 0 : 1;
+	}
+	return (fish > sharks) ? 2 : (state - 2 >= starveTime) ? 0 : state + 1;
+    };
+
+    /**
+     *  Engine is one way of stepping an ocean, as seen by the verifier.
+     */
+
+    private interface Engine {
+	// returns true if the engine can step "sea" at all.
+	boolean accepts(Ocean sea);
+	// starts from "sea", which the engine must not modify.
+	void load(Ocean sea) throws IOException;
+	// advances one timestep.
+	void step() throws IOException;
+	// returns the state hash of the current generation.
+	long stateHash() throws IOException;
+	// returns the state of every cell, cell (x, y) at y * width + x.
+	int[] states() throws IOException;
+	// releases what load() acquired.
+	void close() throws IOException;
+    }
+
+    /**
+     *  BackendFactory makes an OceanBackend from an ocean.
+     */
+
+    private interface BackendFactory {
+	OceanBackend make(Ocean sea);
+    }
+
+    /**
+     *  Backend adapts any OceanBackend.
+     */
+
+    private static class Backend implements Engine {
+	private final BackendFactory factory;
+	private final int variations;
+	private OceanBackend sea;
+
+	// "variations" are the RULES and NEIGHBORHOODS the backend supports.
+	Backend(BackendFactory factory, int variations) {
+	    this.factory = factory;
+	    this.variations = variations;
+	}
+
+	public boolean accepts(Ocean seed) {
+	    return supports(variations, seed);
+	}
+
+	public void load(Ocean seed) {
+	    sea = factory.make(seed);
+	}
+
+	public void step() {
+	    sea = sea.timeStep();
+	}
+
+	public long stateHash() {
+	    return sea.stateHash();
+	}
+
+	public int[] states() {
+	    return statesOf(sea);
+	}
+
+	public void close() {
+	    sea = null;
+	}
+    }
+
+    /**
+     *  Lockstep runs the ocean as the only member of an Ensemble.
+     */
+
+    private static class Lockstep implements Engine {
+	private Ensemble ensemble;
+
+	public boolean accepts(Ocean seed) {
+	    return supports(RULES, seed);
+	}
+
+	public void load(Ocean seed) {
+	    ensemble = new Ensemble(new Ocean[] {seed}, seed.rules());
+	}
+
+	public void step() {
+	    ensemble = ensemble.timeStep();
+	}
+
+	public long stateHash() {
+	    return ensemble.stateHash(0);
+	}
+
+	public int[] states() {
+	    return statesOf(ensemble.member(0));
+	}
+
+	public void close() {
+	    ensemble = null;
+	}
+    }
+
+    /**
+     *  Strips runs the ocean on two local strip workers.
+     */
+
+    private static class Strips implements Engine {
+	private StripCoordinator coordinator;
+
+	public boolean accepts(Ocean seed) {
+	    return supports(0, seed);
+	}
+
+	public void load(Ocean seed) throws IOException {
+	    coordinator = StripCoordinator.local(seed, Math.min(2, seed.height()));
+	}
+
+	public void step() throws IOException {
+	    coordinator.timeStep();
+	}
+
+	public long stateHash() {
+	    return coordinator.stateHash();
+	}
+
+	public int[] states() throws IOException {
+	    return statesOf(coordinator.snapshot().toOcean());
+	}
+
+	public void close() throws IOException {
+	    coordinator.close();
+	}
+    }
+
+    /**
+     *  Streaming steps ocean files with a StreamingStepper.
+     */
+
+    private static class Streaming implements Engine {
+	private final StreamingStepper stepper = new StreamingStepper(1 << 16);
+	private Path directory;
+	private Path current;
+	private Path spare;
+	private long hash;
+
+	public boolean accepts(Ocean seed) {
+	    return supports(0, seed);
+	}
+
+	public void load(Ocean seed) throws IOException {
+	    directory = Files.createTempDirectory("sharkfish-verify");
+	    current = directory.resolve("a.ocean");
+	    spare = directory.resolve("b.ocean");
+	    OceanFile.write(seed, current);
+	    hash = seed.stateHash();
+	}
+
+	public void step() throws IOException {
+	    hash = stepper.step(current, spare).stateHash();
+	    Path swap = current;
+	    current = spare;
+	    spare = swap;
+	}
+
+	public long stateHash() {
+	    return hash;
+	}
+
+	public int[] states() throws IOException {
+	    return statesOf(OceanFile.toOcean(current));
+	}
+
+	public void close() throws IOException {
+	    Files.deleteIfExists(current);
+	    Files.deleteIfExists(spare);
+	    Files.deleteIfExists(directory);
+	}
+    }
+
+    /**
+     *  Encoded steps an Ocean and run-length encodes every generation, from
+     *  scratch or incrementally; the encoding is what is checked.
+     */
+
+    private static class Encoded implements Engine {
+	private final boolean incremental;
+	private Ocean sea;
+	private RunLengthEncoding rle;
+
+	Encoded(boolean incremental) {
+	    this.incremental = incremental;
+	}
+
+	public boolean accepts(Ocean seed) {
+	    return supports(RULES | NEIGHBORHOODS, seed);
+	}
+
+	public void load(Ocean seed) {
+	    sea = copy(seed, Ocean.Layout.ROW_MAJOR);
+	    sea.recordChanges(incremental);
+	    rle = new RunLengthEncoding(sea);
+	}
+
+	public void step() {
+	    sea = sea.timeStep();
+	    if (incremental) {
+		rle.update(sea);
+	    } else {
+		rle = new RunLengthEncoding(sea);
+	    }
+	}
+
+	public long stateHash() {
+	    return rle.toOcean().stateHash();
+	}
+
+	public int[] states() {
+	    return statesOf(rle.toOcean());
+	}
+
+	public void close() {
+	    sea = null;
+	    rle = null;
+	}
+    }
+
+    /**
+     *  Reference is the stepper the engines are checked against.  In other
+     *  neighborhoods than the standard one it counts neighbors with
+     *  Ocean.surroundings(), capped at eight of each kind as the rule tables
+     *  are.
+     */
+
+    private static class Reference {
+	private final RuleTable.Rule rule;
+	private final int width;
+	private final int height;
+	private final int starveTime;
+	private final Neighborhood neighborhood;
+	private int[] states;
+	private int[] next;
+
+	Reference(Ocean seed, RuleTable.Rule rule) {
+	    this.rule = rule;
+	    width = seed.width();
+	    height = seed.height();
+	    starveTime = seed.starveTime();
+	    neighborhood = seed.neighborhood();
+	    states = statesOf(seed);
+	    next = new int[states.length];
+	}
+
+	void step() {
+	    Ocean counted = null;
+	    if (!neighborhood.isStandard()) {
+		counted = new Ocean(width, height, starveTime);
+		counted.setNeighborhood(neighborhood);
+		for (int cell = 0; cell < states.length; cell++) {
+		    if (states[cell] == 1) {
+			counted.addFish(cell % width, cell / width);
+		    } else if (states[cell] >= 2) {
+			counted.addShark(cell % width, cell / width);
+		    }
+		}
+	    }
+	    for (int y = 0; y < height; y++) {
+		for (int x = 0; x < width; x++) {
+		    int[] tally = (counted != null) ? counted.surroundings(x, y) : around(x, y);
+		    int fish = Math.min(tally[0], 8);
+		    int sharks = Math.min(tally[1], 8);
+		    int after = rule.next(states[y * width + x], fish, sharks, starveTime);
+		    next[y * width + x] = Math.min(after, starveTime + 3);
+		}
+	    }
+	    int[] swap = states;
+	    states = next;
+	    next = swap;
+	}
+
+	// returns the numbers of fish and sharks among the eight cells around
+	// cell (x, y).
+	private int[] around(int x, int y) {
+	    int[] tally = new int[2];
+	    for (int dy = -1; dy <= 1; dy++) {
+		for (int dx = -1; dx <= 1; dx++) {
+		    if ((dx == 0) && (dy == 0)) {
+			continue;
+		    }
+		    int s = states[Ocean.wrap(y + dy, height) * width + Ocean.wrap(x + dx, width)];
+		    tally[0] = tally[0] + ((s == 1) ? 1 : 0);
+		    tally[1] = tally[1] + ((s >= 2) ? 1 : 0);
+		}
+	    }
+	    return tally;
+	}
+
+	long stateHash() {
+	    long hash = 0;
+	    for (int cell = 0; cell < states.length; cell++) {
+		hash = hash ^ Zobrist.key(cell, states[cell]);
+	    }
+	    return hash;
+	}
+    }
+
+    /**
+     *  Tally is the running performance figures of one engine.
+     */
+
+    private static class Tally {
+	final String name;
+	final Engine engine;
+	long cells;
+	long steps;
+	long nanos;
+	long allocated;
+
+	Tally(String name, Engine engine) {
+	    this.name = name;
+	    this.engine = engine;
+	}
+    }
+
+    private final static int MAX_DUMP = 32;
+
+    private final static com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final List<Tally> tallies = new ArrayList<Tally>();
+    private final int generations;
+
+    /**
+     *  EngineVerifier() creates a verifier of every engine, stepping each
+     *  trial "generations" timesteps.
+     */
+
+    public EngineVerifier(int generations) {
+	if (generations <= 0) {
+	    System.out.println("Error: invalid number of generations");
+	    System.exit(0);
+	}
+	this.generations = generations;
+	add("Ocean", new Backend(sea -> copy(sea, Ocean.Layout.ROW_MAJOR),
+				 RULES | NEIGHBORHOODS));
+	add("Ocean Z_ORDER", new Backend(sea -> copy(sea, Ocean.Layout.Z_ORDER),
+					 RULES | NEIGHBORHOODS));
+	add("OffHeapOcean", new Backend(sea -> OffHeapOcean.copyOf(sea), 0));
+	add("SparseOcean", new Backend(sea -> SparseOcean.copyOf(sea, sea.rules()), RULES));
+	add("RunLengthOcean", new Backend(sea -> RunLengthOcean.copyOf(sea, sea.rules()),
+					  RULES));
+	// migrates between backends as often as it can.
+	add("AdaptiveOcean", new Backend(sea -> new AdaptiveOcean(copy(sea, Ocean.Layout.ROW_MAJOR),
+								  sea.rules(), 0.3, 0.5, 1),
+					 RULES | NEIGHBORHOODS));
+	add("Ensemble", new Lockstep());
+	add("StripCoordinator", new Strips());
+	add("StreamingStepper", new Streaming());
+	add("RunLengthEncoding", new Encoded(false));
+	add("RunLengthEncoding.update", new Encoded(true));
+    }
+
+    private void add(String name, Engine engine) {
+	tallies.add(new Tally(name, engine));
+    }
+
+    // returns true if an engine that supports "variations" can step "seed".
+    private static boolean supports(int variations, Ocean seed) {
+	return (((variations & RULES) != 0)
+		|| (seed.rules() == RuleTable.standard(seed.starveTime())))
+	    && (((variations & NEIGHBORHOODS) != 0) || seed.neighborhood().isStandard());
+    }
+
+    /**
+     *  verify() steps "sea", which follows the rules of README, in the
+     *  reference and in every engine that supports its neighborhood,
+     *  comparing them after each timestep.  On a divergence it prints the
+     *  cells that differ and returns false.
+     *  @param sea is the starting ocean; it is not modified.
+     *  @param label describes the trial, to reproduce it.
+     *  @return true if every engine matched the reference throughout.
+     */
+
+    public boolean verify(Ocean sea, String label) throws IOException {
+	return verify(sea, Ocean::transition, label);
+    }
+
+    /**
+     *  verify() (with a rule) is the same, for an ocean that evolves by the
+     *  rule table compiled from "rule", and checks every engine that
+     *  supports both its rules and its neighborhood.
+     *  @param sea is the starting ocean; it is not modified.
+     *  @param rule is the rule sea.rules() was compiled from.
+     *  @param label describes the trial, to reproduce it.
+     *  @return true if every engine matched the reference throughout.
+     */
+
+    public boolean verify(Ocean sea, RuleTable.Rule rule, String label)
+	throws IOException {
+	Reference reference = new Reference(sea, rule);
+	long cells = (long) sea.width() * sea.height();
+	List<Tally> active = new ArrayList<Tally>();
+	for (Tally t : tallies) {
+	    if (t.engine.accepts(sea)) {
+		t.engine.load(sea);
+		active.add(t);
+	    }
+	}
+	try {
+	    for (int g = 1; g <= generations; g++) {
+		reference.step();
+		long expected = reference.stateHash();
+		for (Tally t : active) {
+		    long before = allocated();
+		    long start = System.nanoTime();
+		    t.engine.step();
+		    t.nanos = t.nanos + System.nanoTime() - start;
+		    t.allocated = t.allocated + allocated() - before;
+		    t.steps++;
+		    t.cells = t.cells + cells;
+		    if (t.engine.stateHash() != expected) {
+			dump(t, reference, label, g);
+			return false;
+		    }
+		}
+	    }
+	} finally {
+	    for (Tally t : active) {
+		t.engine.close();
+	    }
+	}
+	return true;
+    }
+
+    // prints the trial, the generation and the cells where "t" differs from
+    // the reference.
+    private static void dump(Tally t, Reference reference, String label, int g)
+	throws IOException {
+	System.out.println("DIVERGENCE: " + t.name + " at generation " + g + " of "
+			   + label);
+	int[] got = t.engine.states();
+	int shown = 0;
+	int differing = 0;
+	for (int cell = 0; cell < got.length; cell++) {
+	    if (got[cell] != reference.states[cell]) {
+		differing++;
+		if (shown < MAX_DUMP) {
+		    System.out.println("  (" + (cell % reference.width) + ", "
+				       + (cell / reference.width) + "): expected "
+				       + describe(reference.states[cell]) + ", got "
+				       + describe(got[cell]));
+		    shown++;
+		}
+	    }
+	}
+	System.out.println("  " + differing + " cells differ"
+			   + ((differing == 0) ? "; only the state hash does" : ""));
+    }
+
+    /**
+     *  report() prints each engine's throughput and allocation over every
+     *  ocean verified so far.
+     */
+
+    public void report() {
+	Tally base = tallies.get(0);
+	double baseRate = rate(base);
+	System.out.printf("%-26s %14s %10s %16s%n", "engine", "cells/s", "vs Ocean",
+			  "bytes/timestep");
+	for (Tally t : tallies) {
+	    System.out.printf("%-26s %14.0f %9.2fx %16d%n", t.name, rate(t),
+			      rate(t) / baseRate,
+			      (t.steps == 0) ? 0 : t.allocated / t.steps);
+	}
+    }
+
+    private static double rate(Tally t) {
+	return (t.nanos == 0) ? 0 : t.cells * 1e9 / t.nanos;
+    }
+
+    /**
+     *  trial() returns a random ocean for trial "n" of a run with master seed
+     *  "seed": a width and height from 1 to 40 (often 1 to 3), a starveTime
+     *  from 1 to 6, and sharks of every hunger up to starveTime + 1.  Of
+     *  every four trials, the second evolves by VARIANT (see rule()), the
+     *  third uses a von Neumann neighborhood of radius 1 to 3, and the fourth
+     *  the Moore neighborhood of radius 2, whose cells can have more than
+     *  eight neighbors; every other Moore trial also evolves by VARIANT.
+     *  Wider neighborhoods are on a torus where they fit, and bounded
+     *  otherwise.
+     */
+
+    static Ocean trial(long seed, int n) {
+	SplittableRandom random = new SplittableRandom(seed ^ (n * 0x9E3779B97F4A7C15L));
+	int width = (random.nextInt(4) == 0) ? 1 + random.nextInt(3) : 1 + random.nextInt(40);
+	int height = (random.nextInt(4) == 0) ? 1 + random.nextInt(3) : 1 + random.nextInt(40);
+	int starveTime = 1 + random.nextInt(6);
+	double fish = random.nextDouble() * 0.7;
+	double sharks = random.nextDouble() * (1 - fish) * 0.5;
+	RuleTable rules = (rule(n) == VARIANT) ? RuleTable.compile(VARIANT, starveTime)
+	    : RuleTable.standard(starveTime);
+	Ocean sea = populate(new Ocean(width, height, rules), fish, sharks, random);
+	if (n % 4 == 2) {
+	    sea.setNeighborhood(widened(Neighborhood.Shape.VON_NEUMANN,
+					1 + random.nextInt(3), width, height));
+	} else if (n % 4 == 3) {
+	    sea.setNeighborhood(widened(Neighborhood.Shape.MOORE, 2, width, height));
+	}
+	return sea;
+    }
+
+    /**
+     *  rule() returns the Rule trial "n" evolves by: VARIANT or
+     *  Ocean.transition().
+     */
+
+    static RuleTable.Rule rule(int n) {
+	return ((n % 4 == 1) || (n % 8 == 7)) ? VARIANT : Ocean::transition;
+    }
+
+    // returns the neighborhood of "shape" and "radius" on a torus if it fits
+    // an i x j ocean, or bounded if not.
+    private static Neighborhood widened(Neighborhood.Shape shape, int radius,
+					int i, int j) {
+	Neighborhood torus = new Neighborhood(shape, radius, Neighborhood.Boundary.TORUS);
+	return torus.fits(i, j) ? torus
+	    : new Neighborhood(shape, radius, Neighborhood.Boundary.BOUNDED);
+    }
+
+    // fills "sea" at random and returns it.
+    private static Ocean populate(Ocean sea, double fish, double sharks,
+				  SplittableRandom random) {
+	for (int y = 0; y < sea.height(); y++) {
+	    for (int x = 0; x < sea.width(); x++) {
+		double r = random.nextDouble();
+		if (r < fish) {
+		    sea.addFish(x, y);
+		} else if (r < fish + sharks) {
+		    sea.addShark(x, y, random.nextInt(sea.starveTime() + 2));
+		}
+	    }
+	}
+	return sea;
+    }
+
+    // returns a copy of "sea" in "layout", built cell by cell.
+    private static Ocean copy(Ocean sea, Ocean.Layout layout) {
+	Ocean copy = new Ocean(sea.width(), sea.height(), sea.rules(), layout);
+	if (!sea.neighborhood().isStandard()) {
+	    copy.setNeighborhood(sea.neighborhood());
+	}
+	for (int y = 0; y < sea.height(); y++) {
+	    for (int x = 0; x < sea.width(); x++) {
+		int contents = sea.cellContents(x, y);
+		if (contents == Ocean.FISH) {
+		    copy.addFish(x, y);
+		} else if (contents == Ocean.SHARK) {
+		    copy.addShark(x, y, sea.sharkFeeding(x, y));
+		}
+	    }
+	}
+	return copy;
+    }
+
+    // returns the states of the cells of "sea", numbered as by
+    // OceanNode.state(), row by row.
+    private static int[] statesOf(OceanBackend sea) {
+	int width = sea.width();
+	int[] states = new int[width * sea.height()];
+	for (int cell = 0; cell < states.length; cell++) {
+	    int x = cell % width;
+	    int y = cell / width;
+	    int contents = sea.cellContents(x, y);
+	    states[cell] = (contents == Ocean.EMPTY) ? 0 : (contents == Ocean.FISH) ? 1
+		: 2 + sea.sharkFeeding(x, y);
+	}
+	return states;
+    }
+
+    private static String describe(int state) {
+	if (state == 0) {
+	    return "empty";
+	}
+	return (state == 1) ? "fish" : "shark with hunger " + (state - 2);
+    }
+
+    private static String describe(Neighborhood neighborhood) {
+	return neighborhood.shape() + " radius " + neighborhood.radius() + " "
+	    + neighborhood.boundary();
+    }
+
+    // returns the bytes allocated so far by all live threads.
+    private static long allocated() {
+	if (THREADS == null) {
+	    return 0;
+	}
+	long total = 0;
+	for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+	    total = total + Math.max(bytes, 0);
+	}
+	return total;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+	    return null;
+	}
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+	return threads.isThreadAllocatedMemorySupported() ? threads : null;
+    }
+
+    /**
+     *  main() runs "trials" random trials of "generations" timesteps each,
+     *  then one size x size ocean, and prints the performance table for the
+     *  latter.  It exits with status 1 at the first divergence.
+     */
+
+    public static void main(String[] argv) throws IOException {
+	if (argv.length < 4) {
+	    System.out.println("Usage: java sharkfish.EngineVerifier trials generations"
+			       + " size seed");
+	    System.exit(0);
+	}
+	int trials = Integer.parseInt(argv[0]);
+	int generations = Integer.parseInt(argv[1]);
+	int size = Integer.parseInt(argv[2]);
+	long seed = Long.parseLong(argv[3]);
+	EngineVerifier verifier = new EngineVerifier(generations);
+	for (int n = 0; n < trials; n++) {
+	    Ocean sea = trial(seed, n);
+	    String label = "trial " + n + " (seed " + seed + ": " + sea.width() + "x"
+		+ sea.height() + ", starveTime " + sea.starveTime()
+		+ ((rule(n) == VARIANT) ? ", VARIANT" : "")
+		+ (sea.neighborhood().isStandard() ? "" : ", " + describe(sea.neighborhood()))
+		+ ")";
+	    if (!verifier.verify(sea, rule(n), label)) {
+		System.exit(1);
+	    }
+	}
+	// the table describes the large ocean alone.
+	verifier = new EngineVerifier(generations);
+	Ocean large = populate(new Ocean(size, size, 3), 0.5, 0.15,
+			       new SplittableRandom(seed));
+	if (!verifier.verify(large, size + "x" + size + " ocean (seed " + seed + ")")) {
+	    System.exit(1);
+	}
+	System.out.println(trials + " trials and one " + size + "x" + size + " ocean, "
+			   + generations + " timesteps each: every engine matches the"
+			   + " reference");
+	verifier.report();
+    }
+}
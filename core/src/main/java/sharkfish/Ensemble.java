@@ -0,0 +1,525 @@
+/* Ensemble.java */
+
+package sharkfish;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ *  The Ensemble class steps many independent oceans of the same size and
+ *  starveTime in lockstep, for Monte Carlo runs of thousands of small oceans
+ *  that are each too small to parallelize on their own.
+ *
+ *  The members are stored as a structure of arrays: every member has a lane,
+ *  and cell (x, y) of the member in lane l is the byte
+ *  cells[(y * width + x) * stride + l], in the packed cell format (see
+ *  PackedRows).  So a cell position across all members is one contiguous
+ *  stretch of bytes, and timeStep() counts neighbors for it in a single
+ *  loop over the lanes, which the JIT compiler can vectorize.  The lanes are
+ *  split into blocks of BLOCK lanes that are stepped in parallel; each block
+ *  writes only its own lanes, so the threads share nothing but the rule
+ *  table and a table of the Zobrist keys of every cell and state.
+ *
+ *  A member that dies out is dropped: its results are recorded under its
+ *  member number, which never changes, and the last lane is moved into its
+ *  place.  When half the lanes are free, the cells are repacked with a
+ *  smaller stride, so later timesteps touch only live members.  Like
+ *  OffHeapOcean, timeStep() advances the ensemble in place and returns it.
+ */
+
+public class Ensemble {
+
+    /**
+     *  The number of lanes stepped by one thread at a time.
+     */
+
+    public final static int BLOCK = 256;
+
+    private final int width;
+    private final int height;
+    private final int starveTime;
+    private final RuleTable rules;
+    private final int members;
+    private final int states;
+    private final long[] keys;
+    private long generation;
+
+    // the live members, by lane.
+    private int alive;
+    private int stride;
+    private byte[] cells;
+    private byte[] next;
+    private int[] memberOf;
+    private long[] laneHash;
+    private long[] laneFish;
+    private long[] laneSharks;
+    private long[] laneBirths;
+    private long[] lanePredation;
+    private long[] laneStarvations;
+
+    // every member, by member number.
+    private final int[] laneOf;
+    private final long[] extinctAt;
+    private final long[] finalHash;
+    private final long[] totalBirths;
+    private final long[] totalPredation;
+    private final long[] totalStarvations;
+
+    /**
+     *  Ensemble() is a constructor that creates an ensemble whose members are
+     *  copies of "seas", numbered in the same order.  All of them must have
+     *  the same width, height, starveTime and generation, and the standard
+     *  neighborhood.
+     *  @param seas is the starting oceans.
+     *  @param rules is the compiled rule table, for their starveTime.
+     */
+
+    public Ensemble(Ocean[] seas, RuleTable rules) {
+	if (seas.length == 0) {
+	    System.out.println("Error: an ensemble needs at least one member");
+	    System.exit(0);
+	}
+	Ocean first = seas[0];
+	for (Ocean sea : seas) {
+	    if ((sea.width() != first.width()) || (sea.height() != first.height())
+		|| (sea.starveTime() != first.starveTime())
+		|| (sea.generation() != first.generation())
+		|| !sea.neighborhood().isStandard()) {
+		System.out.println("Error: ensemble members do not match");
+		System.exit(0);
+	    }
+	}
+	if ((rules.starveTime() != first.starveTime())
+	    || (first.starveTime() > OffHeapOcean.MAX_STARVE_TIME)) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	}
+	width = first.width();
+	height = first.height();
+	starveTime = first.starveTime();
+	this.rules = rules;
+	members = seas.length;
+	generation = first.generation();
+	// every member hashes with the same keys, so they are tabulated once.
+	states = starveTime + 4;
+	keys = new long[width * height * states];
+	for (int k = 0; k < keys.length; k++) {
+	    keys[k] = Zobrist.key(k / states, k % states);
+	}
+	alive = members;
+	stride = members;
+	int area = width * height;
+	cells = new byte[area * stride];
+	next = new byte[area * stride];
+	memberOf = new int[members];
+	laneHash = new long[members];
+	laneFish = new long[members];
+	laneSharks = new long[members];
+	laneBirths = new long[members];
+	lanePredation = new long[members];
+	laneStarvations = new long[members];
+	laneOf = new int[members];
+	extinctAt = new long[members];
+	finalHash = new long[members];
+	totalBirths = new long[members];
+	totalPredation = new long[members];
+	totalStarvations = new long[members];
+	Arrays.fill(extinctAt, -1);
+	for (int m = 0; m < members; m++) {
+	    Ocean sea = seas[m];
+	    memberOf[m] = m;
+	    laneOf[m] = m;
+	    long h = 0;
+	    for (int y = 0; y < height; y++) {
+		for (int x = 0; x < width; x++) {
+		    int cell = y * width + x;
+		    int contents = sea.cellContents(x, y);
+		    int state = 0;
+		    if (contents == Ocean.FISH) {
+			state = 1;
+			laneFish[m]++;
+		    } else if (contents == Ocean.SHARK) {
+			state = PackedRows.pack(2 + sea.sharkFeeding(x, y), starveTime);
+			laneSharks[m]++;
+		    }
+		    cells[cell * stride + m] = (byte) state;
+		    h = h ^ Zobrist.key(cell, state);
+		}
+	    }
+	    laneHash[m] = h;
+	}
+	dropExtinct();
+    }
+
+    /**
+     *  seeded() is a factory that creates an ensemble of "seeds.length"
+     *  members, member m being Ocean.seeded(i, j, starveTime, fishDensity,
+     *  sharkDensity, seeds[m]).
+     *  @param i is the width of each ocean.
+     *  @param j is the height of each ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @param fishDensity is the probability that a cell starts with a fish.
+     *  @param sharkDensity is the probability that a cell starts with a shark.
+     *  @param seeds is the master seed of each member.
+     *  @return the seeded ensemble.
+     */
+
+    public static Ensemble seeded(int i, int j, int starveTime, double fishDensity,
+				  double sharkDensity, long[] seeds) {
+	Ocean[] seas = new Ocean[seeds.length];
+	for (int m = 0; m < seeds.length; m++) {
+	    seas[m] = Ocean.seeded(i, j, starveTime, fishDensity, sharkDensity,
+				   seeds[m]);
+	}
+	return new Ensemble(seas, RuleTable.standard(starveTime));
+    }
+
+    /**
+     *  width() returns the width of every member.
+     */
+
+    public int width() {
+	return width;
+    }
+
+    /**
+     *  height() returns the height of every member.
+     */
+
+    public int height() {
+	return height;
+    }
+
+    /**
+     *  starveTime() returns the number of timesteps sharks survive without
+     *  food.
+     */
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    /**
+     *  generation() returns the generation every live member has reached.
+     */
+
+    public long generation() {
+	return generation;
+    }
+
+    /**
+     *  members() returns the number of members, live or extinct.
+     */
+
+    public int members() {
+	return members;
+    }
+
+    /**
+     *  alive() returns the number of members that have not died out.
+     */
+
+    public int alive() {
+	return alive;
+    }
+
+    /**
+     *  extinctAt() returns the generation in which member m died out, or -1
+     *  if it is still alive.
+     *  @param m is the member number.
+     */
+
+    public long extinctAt(int m) {
+	return extinctAt[m];
+    }
+
+    /**
+     *  fishCount() returns the number of fish in member m.
+     *  @param m is the member number.
+     */
+
+    public long fishCount(int m) {
+	return (laneOf[m] < 0) ? 0 : laneFish[laneOf[m]];
+    }
+
+    /**
+     *  sharkCount() returns the number of sharks in member m.
+     *  @param m is the member number.
+     */
+
+    public long sharkCount(int m) {
+	return (laneOf[m] < 0) ? 0 : laneSharks[laneOf[m]];
+    }
+
+    /**
+     *  stateHash() returns the Zobrist hash of member m, as defined by
+     *  Ocean.stateHash(); for an extinct member, the hash it died out with.
+     *  @param m is the member number.
+     */
+
+    public long stateHash(int m) {
+	return (laneOf[m] < 0) ? finalHash[m] : laneHash[laneOf[m]];
+    }
+
+    /**
+     *  totalBirths() returns the number of fish and sharks born in member m
+     *  over the whole run.
+     *  @param m is the member number.
+     */
+
+    public long totalBirths(int m) {
+	return totalBirths[m];
+    }
+
+    /**
+     *  totalPredation() returns the number of fish eaten in member m over the
+     *  whole run.
+     *  @param m is the member number.
+     */
+
+    public long totalPredation(int m) {
+	return totalPredation[m];
+    }
+
+    /**
+     *  totalStarvations() returns the number of sharks that starved in member
+     *  m over the whole run.
+     *  @param m is the member number.
+     */
+
+    public long totalStarvations(int m) {
+	return totalStarvations[m];
+    }
+
+    /**
+     *  member() copies live member m into an Ocean, in the current generation.
+     *  @param m is the member number.
+     *  @return the copy.
+     */
+
+    public Ocean member(int m) {
+	int lane = laneOf[m];
+	if (lane < 0) {
+	    System.out.println("Error: member " + m + " is extinct");
+	    System.exit(0);
+	}
+	Ocean sea = new Ocean(width, height, rules);
+	for (int y = 0; y < height; y++) {
+	    for (int x = 0; x < width; x++) {
+		int state = Byte.toUnsignedInt(cells[(y * width + x) * stride + lane]);
+		if (state == 1) {
+		    sea.addFish(x, y);
+		} else if (state >= 2) {
+		    sea.addShark(x, y, state - 2);
+		}
+	    }
+	}
+	sea.setGeneration(generation);
+	return sea;
+    }
+
+    /**
+     *  timeStep() advances every live member one timestep, following the
+     *  same rules as Ocean.timeStep(), and then drops the members that have
+     *  died out.
+     *  @return this ensemble, now one generation later.
+     */
+
+    public Ensemble timeStep() {
+	StepEvent event = SimulationMetrics.beginStep();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytesByAllThreads();
+	}
+	int stepped = alive;
+	int blocks = (alive + BLOCK - 1) / BLOCK;
+	IntStream.range(0, blocks).parallel().forEach(b ->
+	    stepLanes(b * BLOCK, Math.min(alive, (b + 1) * BLOCK)));
+	byte[] swap = cells;
+	cells = next;
+	next = swap;
+	generation++;
+	long born = 0;
+	long eaten = 0;
+	long starved = 0;
+	for (int lane = 0; lane < alive; lane++) {
+	    int m = memberOf[lane];
+	    totalBirths[m] = totalBirths[m] + laneBirths[lane];
+	    totalPredation[m] = totalPredation[m] + lanePredation[lane];
+	    totalStarvations[m] = totalStarvations[m] + laneStarvations[lane];
+	    born = born + laneBirths[lane];
+	    eaten = eaten + lanePredation[lane];
+	    starved = starved + laneStarvations[lane];
+	}
+	dropExtinct();
+	if (measured) {
+	    SimulationMetrics.recordStep(event, generation, width, height, stepped,
+					 born, eaten + starved, starved,
+					 System.nanoTime() - start,
+					 SimulationMetrics.allocatedBytesByAllThreads() - allocated);
+	}
+	return this;
+    }
+
+    // steps lanes lo through hi - 1 from "cells" into "next", and sets their
+    // counts and tallies.
+    private void stepLanes(int lo, int hi) {
+	int n = hi - lo;
+	char[] table = rules.next;
+	byte[] events = rules.events;
+	byte[] cells = this.cells;
+	byte[] next = this.next;
+	long[] keys = this.keys;
+	int width = this.width;
+	int height = this.height;
+	int stride = this.stride;
+	int states = this.states;
+	byte[] colFish = new byte[width * n];
+	byte[] colSharks = new byte[width * n];
+	long[] hash = new long[n];
+	int[] fish = new int[n];
+	int[] sharks = new int[n];
+	int[] births = new int[n];
+	int[] predation = new int[n];
+	int[] starvations = new int[n];
+	for (int y = 0; y < height; y++) {
+	    int up = ((y == 0) ? height - 1 : y - 1) * width;
+	    int row = y * width;
+	    int down = ((y == height - 1) ? 0 : y + 1) * width;
+	    // the fish and sharks in each column of the three rows, lane by lane.
+	    for (int x = 0; x < width; x++) {
+		int a = (up + x) * stride + lo;
+		int m = (row + x) * stride + lo;
+		int b = (down + x) * stride + lo;
+		int c = x * n;
+		for (int l = 0; l < n; l++) {
+		    int sa = cells[a + l];
+		    int sm = cells[m + l];
+		    int sb = cells[b + l];
+		    colFish[c + l] = (byte) ((sa == 1 ? 1 : 0) + (sm == 1 ? 1 : 0)
+					     + (sb == 1 ? 1 : 0));
+		    colSharks[c + l] = (byte) (((sa & 0xfe) != 0 ? 1 : 0)
+					       + ((sm & 0xfe) != 0 ? 1 : 0)
+					       + ((sb & 0xfe) != 0 ? 1 : 0));
+		}
+	    }
+	    for (int x = 0; x < width; x++) {
+		int left = ((x == 0) ? width - 1 : x - 1) * n;
+		int mid = x * n;
+		int right = ((x == width - 1) ? 0 : x + 1) * n;
+		int cell = row + x;
+		int m = cell * stride + lo;
+		int key = cell * states;
+		for (int l = 0; l < n; l++) {
+		    int before = Byte.toUnsignedInt(cells[m + l]);
+		    int fishnum = colFish[left + l] + colFish[mid + l] + colFish[right + l]
+			- (before == 1 ? 1 : 0);
+		    int sharksnum = colSharks[left + l] + colSharks[mid + l]
+			+ colSharks[right + l] - (before >= 2 ? 1 : 0);
+		    int k = RuleTable.index(before, fishnum, sharksnum);
+		    int after = table[k];
+		    int e = events[k];
+		    next[m + l] = (byte) after;
+		    fish[l] = fish[l] + (e & RuleTable.FISH_AFTER);
+		    sharks[l] = sharks[l] + ((e >>> 1) & 1);
+		    births[l] = births[l] + ((e >>> 2) & 1);
+		    predation[l] = predation[l] + ((e >>> 3) & 1);
+		    starvations[l] = starvations[l] + ((e >>> 4) & 1);
+		    if ((e & RuleTable.CHANGED) != 0) {
+			hash[l] = hash[l] ^ keys[key + before] ^ keys[key + after];
+		    }
+		}
+	    }
+	}
+	for (int l = 0; l < n; l++) {
+	    laneHash[lo + l] = laneHash[lo + l] ^ hash[l];
+	    laneFish[lo + l] = fish[l];
+	    laneSharks[lo + l] = sharks[l];
+	    laneBirths[lo + l] = births[l];
+	    lanePredation[lo + l] = predation[l];
+	    laneStarvations[lo + l] = starvations[l];
+	}
+    }
+
+    // drops every member with no fish and no sharks, moving the last live
+    // lane into each freed lane, and repacks once half the lanes are free.
+    private void dropExtinct() {
+	int area = width * height;
+	int lane = 0;
+	while (lane < alive) {
+	    if (laneFish[lane] + laneSharks[lane] != 0) {
+		lane++;
+		continue;
+	    }
+	    int m = memberOf[lane];
+	    extinctAt[m] = generation;
+	    finalHash[m] = laneHash[lane];
+	    laneOf[m] = -1;
+	    int last = alive - 1;
+	    if (lane != last) {
+		for (int cell = 0; cell < area; cell++) {
+		    cells[cell * stride + lane] = cells[cell * stride + last];
+		}
+		memberOf[lane] = memberOf[last];
+		laneOf[memberOf[lane]] = lane;
+		laneHash[lane] = laneHash[last];
+		laneFish[lane] = laneFish[last];
+		laneSharks[lane] = laneSharks[last];
+	    }
+	    alive--;
+	}
+	if ((alive > 0) && (2 * alive <= stride)) {
+	    byte[] packed = new byte[area * alive];
+	    for (int cell = 0; cell < area; cell++) {
+		System.arraycopy(cells, cell * stride, packed, cell * alive, alive);
+	    }
+	    cells = packed;
+	    next = new byte[area * alive];
+	    stride = alive;
+	}
+    }
+
+    /**
+     *  main() runs an ensemble of randomly seeded oceans and prints, for each
+     *  member, the generation it died out in (or "alive") and its final
+     *  population.  The parameters are the number of members, the width and
+     *  height of each ocean, starveTime and the number of timesteps; the
+     *  members are seeded like SimText's default ocean densities, member m
+     *  with seed m.
+     */
+
+    public static void main(String[] argv) {
+	if (argv.length < 5) {
+	    System.out.println("Usage: java sharkfish.Ensemble members width height"
+			       + " starveTime timesteps");
+	    System.exit(0);
+	}
+	int count = Integer.parseInt(argv[0]);
+	int i = Integer.parseInt(argv[1]);
+	int j = Integer.parseInt(argv[2]);
+	int starveTime = Integer.parseInt(argv[3]);
+	int timesteps = Integer.parseInt(argv[4]);
+	long[] seeds = new long[count];
+	for (int m = 0; m < count; m++) {
+	    seeds[m] = m;
+	}
+	Ensemble ensemble = seeded(i, j, starveTime, 0.5, 0.15, seeds);
+	long start = System.nanoTime();
+	for (int t = 0; (t < timesteps) && (ensemble.alive() > 0); t++) {
+	    ensemble.timeStep();
+	}
+	long elapsed = System.nanoTime() - start;
+	for (int m = 0; m < count; m++) {
+	    long extinct = ensemble.extinctAt(m);
+	    System.out.println(m + " " + ((extinct < 0) ? "alive" : "extinct@" + extinct)
+			       + " fish=" + ensemble.fishCount(m)
+			       + " sharks=" + ensemble.sharkCount(m));
+	}
+	System.out.println(ensemble.alive() + " of " + count + " alive after "
+			   + ensemble.generation() + " generations, "
+			   + (elapsed / 1000000) + " ms");
+    }
+}
@@ -0,0 +1,393 @@
+/* FrameExporter.java */
+
+package sharkfish;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ *  The FrameExporter class records a simulation as a sequence of PNG frames
+ *  or as an animated GIF without slowing down the step loop.  offer() copies
+ *  the cells of a generation into a flat array (see Ocean.cellContents())
+ *  and puts it on a bounded queue; a pool of encoder threads turns each
+ *  snapshot into an indexed image, built directly from the flat array rather
+ *  than with per-cell Graphics calls, and writes it out.  The colors match
+ *  Simulation: white water, green fish, red sharks.
+ *
+ *  When the queue is full, the Overflow policy decides what happens: BLOCK
+ *  makes offer() wait (backpressure), DROP_NEWEST discards the new frame,
+ *  and DROP_OLDEST discards the oldest queued frame to make room.  PNG
+ *  frames are written as frame-NNNNNN.png, numbered by generation, in any
+ *  order; GIF frames are encoded in parallel but appended in the order they
+ *  were accepted.  A frame that fails to encode or write is skipped and the
+ *  encoders go on; offer() and close() rethrow the first failure.
+ */
+
+public class FrameExporter implements Closeable {
+
+    public enum Format { PNG, GIF }
+
+    public enum Overflow { BLOCK, DROP_NEWEST, DROP_OLDEST }
+
+    private final static IndexColorModel PALETTE = new IndexColorModel(2, 3,
+	new byte[] {(byte) 255, (byte) 255, 0},
+	new byte[] {(byte) 255, 0, (byte) 255},
+	new byte[] {(byte) 255, 0, 0});
+
+    // stands in the GIF reorder map for a frame that was dropped.
+    private final static BufferedImage SKIPPED =
+	new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_BINARY);
+
+    /**
+     *  Snapshot is one queued generation.
+     */
+
+    private static class Snapshot {
+	long sequence;
+	long generation;
+	int width;
+	int height;
+	byte[] contents;
+    }
+
+    private final Path target;
+    private final Format format;
+    private final Overflow overflow;
+    private final int capacity;
+    private final int cellSize;
+    private final int delay;
+    private final ArrayDeque<Snapshot> queue = new ArrayDeque<Snapshot>();
+    private final List<Thread> encoders = new ArrayList<Thread>();
+    private boolean closed;
+    private long sequence;
+    private long exported;
+    private long dropped;
+    private IOException failure;
+
+    private ImageWriter gifWriter;
+    private ImageOutputStream gifStream;
+    private final Map<Long, BufferedImage> pending =
+	new ConcurrentHashMap<Long, BufferedImage>();
+    private final Object gifLock = new Object();
+    private long nextToWrite;
+    private boolean loopWritten;
+
+    /**
+     *  FrameExporter() starts an exporter.
+     *  @param target is the directory for PNG frames (created if needed), or
+     *         the GIF file.
+     *  @param format is PNG or GIF.
+     *  @param overflow says what to do when the queue is full.
+     *  @param capacity is the number of snapshots the queue holds.
+     *  @param threads is the number of encoder threads.
+     *  @param cellSize is the width and height of a cell in pixels.
+     *  @param delay is the time each GIF frame is shown, in milliseconds.
+     */
+
+    public FrameExporter(Path target, Format format, Overflow overflow,
+			 int capacity, int threads, int cellSize, int delay)
+	throws IOException {
+	if ((capacity <= 0) || (threads <= 0) || (cellSize <= 0) || (delay < 0)) {
+	    System.out.println("Error: invalid exporter parameters");
+	    System.exit(0);
+	}
+	this.target = target;
+	this.format = format;
+	this.overflow = overflow;
+	this.capacity = capacity;
+	this.cellSize = cellSize;
+	this.delay = delay;
+	if (format == Format.PNG) {
+	    Files.createDirectories(target);
+	} else {
+	    gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+	    Files.deleteIfExists(target);
+	    gifStream = ImageIO.createImageOutputStream(target.toFile());
+	    gifWriter.setOutput(gifStream);
+	    gifWriter.prepareWriteSequence(null);
+	}
+	for (int k = 0; k < threads; k++) {
+	    Thread t = new Thread(this::encode, "frame-encoder-" + k);
+	    t.setDaemon(true);
+	    t.start();
+	    encoders.add(t);
+	}
+    }
+
+    /**
+     *  offer() snapshots the current generation of "sea" for export.  Once
+     *  a frame has failed to encode, it rethrows that failure rather than
+     *  queue more.
+     *  @return true if the frame was queued, false if it was dropped.
+     */
+
+    public boolean offer(Ocean sea) throws IOException, InterruptedException {
+	byte[] contents = new byte[sea.width() * sea.height()];
+	sea.cellContents(contents);
+	return offer(sea.generation(), sea.width(), sea.height(), contents);
+    }
+
+    /**
+     *  offer() (with four parameters) queues a generation given as flat cell
+     *  contents, row by row, each Ocean.EMPTY, Ocean.SHARK or Ocean.FISH.  The
+     *  exporter takes ownership of the array.  Like offer() above, it
+     *  rethrows the first encoding failure.
+     *  @return true if the frame was queued, false if it was dropped.
+     */
+
+    public synchronized boolean offer(long generation, int width, int height,
+				      byte[] contents)
+	throws IOException, InterruptedException {
+	if (closed) {
+	    System.out.println("Error: exporter is closed");
+	    System.exit(0);
+	}
+	while (queue.size() >= capacity) {
+	    if (failure != null) {
+		throw failure;
+	    }
+	    if (overflow == Overflow.DROP_NEWEST) {
+		dropped++;
+		return false;
+	    } else if (overflow == Overflow.DROP_OLDEST) {
+		skip(queue.removeFirst().sequence);
+		dropped++;
+	    } else {
+		wait();
+	    }
+	}
+	if (failure != null) {
+	    throw failure;
+	}
+	Snapshot s = new Snapshot();
+	s.sequence = sequence++;
+	s.generation = generation;
+	s.width = width;
+	s.height = height;
+	s.contents = contents;
+	queue.addLast(s);
+	notifyAll();
+	return true;
+    }
+
+    // takes the next snapshot, or returns null once closed and drained.
+    private synchronized Snapshot take() throws InterruptedException {
+	while (queue.isEmpty() && !closed) {
+	    wait();
+	}
+	Snapshot s = queue.pollFirst();
+	notifyAll();
+	return s;
+    }
+
+    // the loop of each encoder thread.  A frame that fails is recorded and
+    // skipped, and the thread goes on with the next one, so the queue keeps
+    // draining.
+    private void encode() {
+	try {
+	    Snapshot s;
+	    while ((s = take()) != null) {
+		try {
+		    export(s);
+		} catch (IOException | RuntimeException e) {
+		    fail(s.sequence, (e instanceof IOException) ? (IOException) e
+			 : new IOException(e));
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    private void export(Snapshot s) throws IOException {
+	BufferedImage image = raster(s);
+	if (format == Format.PNG) {
+	    String name = String.format("frame-%06d.png", s.generation);
+	    ImageIO.write(image, "png", new File(target.toFile(), name));
+	    synchronized (this) {
+		exported++;
+	    }
+	} else {
+	    append(s.sequence, image);
+	}
+    }
+
+    // records the first failure, which offer() and close() rethrow, and
+    // skips frame "seq" so GIF output does not wait for it.
+    private void fail(long seq, IOException e) {
+	synchronized (this) {
+	    if (failure == null) {
+		failure = e;
+	    }
+	    notifyAll();
+	}
+	if (format == Format.GIF) {
+	    synchronized (gifLock) {
+		if (seq >= nextToWrite) {
+		    pending.putIfAbsent(seq, SKIPPED);
+		}
+	    }
+	    try {
+		drain();
+	    } catch (IOException | RuntimeException again) {
+		// already recorded; drain() has moved past the frame that failed.
+	    }
+	}
+    }
+
+    /**
+     *  raster() builds an indexed image whose pixel values are the cell
+     *  contents themselves; the palette maps them to colors.
+     */
+
+    private BufferedImage raster(Snapshot s) {
+	int w = s.width * cellSize;
+	int h = s.height * cellSize;
+	BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, PALETTE);
+	byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	byte[] line = new byte[w];
+	for (int y = 0; y < s.height; y++) {
+	    int src = y * s.width;
+	    if (cellSize == 1) {
+		System.arraycopy(s.contents, src, pixels, y * w, w);
+		continue;
+	    }
+	    for (int x = 0; x < s.width; x++) {
+		byte v = s.contents[src + x];
+		for (int k = 0; k < cellSize; k++) {
+		    line[x * cellSize + k] = v;
+		}
+	    }
+	    for (int k = 0; k < cellSize; k++) {
+		System.arraycopy(line, 0, pixels, (y * cellSize + k) * w, w);
+	    }
+	}
+	return image;
+    }
+
+    // records that frame "seq" was dropped, so GIF output does not wait for
+    // it.  The next append() or close() writes whatever this unblocks.
+    private void skip(long seq) {
+	if (format == Format.GIF) {
+	    pending.put(seq, SKIPPED);
+	}
+    }
+
+    private void append(long seq, BufferedImage image) throws IOException {
+	pending.put(seq, image);
+	drain();
+    }
+
+    // writes every consecutive frame that is ready, in sequence order.  A
+    // frame that fails to write is passed over, so later ones still drain.
+    private void drain() throws IOException {
+	synchronized (gifLock) {
+	    BufferedImage image;
+	    while ((image = pending.remove(nextToWrite)) != null) {
+		nextToWrite++;
+		if (image != SKIPPED) {
+		    // the loop extension goes in the first frame written, once.
+		    writeGifFrame(image, !loopWritten);
+		    loopWritten = true;
+		    synchronized (this) {
+			exported++;
+		    }
+		}
+	    }
+	}
+    }
+
+    private void writeGifFrame(BufferedImage image, boolean first) throws IOException {
+	ImageWriteParam param = gifWriter.getDefaultWriteParam();
+	IIOMetadata meta = gifWriter.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+	String formatName = meta.getNativeMetadataFormatName();
+	IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(formatName);
+	IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+	control.setAttribute("disposalMethod", "none");
+	control.setAttribute("userInputFlag", "FALSE");
+	control.setAttribute("transparentColorFlag", "FALSE");
+	control.setAttribute("delayTime", Integer.toString(delay / 10));
+	control.setAttribute("transparentColorIndex", "0");
+	root.appendChild(control);
+	if (first) {
+	    IIOMetadataNode apps = new IIOMetadataNode("ApplicationExtensions");
+	    IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+	    loop.setAttribute("applicationID", "NETSCAPE");
+	    loop.setAttribute("authenticationCode", "2.0");
+	    loop.setUserObject(new byte[] {1, 0, 0});
+	    apps.appendChild(loop);
+	    root.appendChild(apps);
+	}
+	meta.setFromTree(formatName, root);
+	gifWriter.writeToSequence(new IIOImage(image, null, meta), param);
+    }
+
+    /**
+     *  exported() returns the number of frames written so far.
+     */
+
+    public synchronized long exported() {
+	return exported;
+    }
+
+    /**
+     *  dropped() returns the number of frames discarded by the overflow
+     *  policy.
+     */
+
+    public synchronized long dropped() {
+	return dropped;
+    }
+
+    /**
+     *  close() stops accepting frames, waits for the queued ones to be
+     *  written, and finishes the GIF file.  It rethrows the first encoding
+     *  failure, if any.
+     */
+
+    public void close() throws IOException {
+	synchronized (this) {
+	    closed = true;
+	    notifyAll();
+	}
+	try {
+	    for (Thread t : encoders) {
+		t.join();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	if (gifWriter != null) {
+	    drain();
+	    if (exported() > 0) {
+		gifWriter.endWriteSequence();
+	    }
+	    gifStream.close();
+	    gifWriter.dispose();
+	}
+	synchronized (this) {
+	    if (failure != null) {
+		throw failure;
+	    }
+	}
+    }
+}
@@ -0,0 +1,95 @@
+/* LatencyHistogram.java */
+
+package sharkfish;
+
+/**
+ *  LatencyHistogram is a class used internally by SimulationMetrics.  It
+ *  counts latencies in power-of-two nanosecond buckets: bucket k holds the
+ *  latencies in [2^k, 2^(k+1)) ns, bucket zero also holds zero, and the last
+ *  bucket holds everything above it.  It is not thread-safe; SimulationMetrics
+ *  synchronizes around it.
+ */
+
+class LatencyHistogram {
+
+    public final static int BUCKETS = 48;
+
+    private long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     *  record() adds one latency to the histogram.
+     *  @param nanos is the latency in nanoseconds.
+     */
+
+    public void record(long nanos) {
+	if (nanos < 0) {
+	    nanos = 0;
+	}
+	int bucket = 63 - Long.numberOfLeadingZeros(nanos | 1);
+	if (bucket >= BUCKETS) {
+	    bucket = BUCKETS - 1;
+	}
+	counts[bucket]++;
+	total++;
+	sum = sum + nanos;
+	if (nanos > max) {
+	    max = nanos;
+	}
+    }
+
+    /**
+     *  counts() returns a copy of the bucket counts.
+     *  @return an array whose index k is the number of latencies in bucket k.
+     */
+
+    public long[] counts() {
+	return counts.clone();
+    }
+
+    public long total() {
+	return total;
+    }
+
+    public long sum() {
+	return sum;
+    }
+
+    public long max() {
+	return max;
+    }
+
+    /**
+     *  percentile() returns an upper bound on the given percentile: the upper
+     *  edge of the bucket that contains it.
+     *  @param p is the percentile, between 0 and 100.
+     *  @return the upper edge of the bucket in nanoseconds, or 0 if empty.
+     */
+
+    public long percentile(double p) {
+	if (total == 0) {
+	    return 0;
+	}
+	long rank = (long) Math.ceil(total * p / 100.0);
+	if (rank < 1) {
+	    rank = 1;
+	}
+	long seen = 0;
+	for (int k = 0; k < BUCKETS; k++) {
+	    seen = seen + counts[k];
+	    if (seen >= rank) {
+		return Math.min(max, (2L << k) - 1);
+	    }
+	}
+	return max;
+    }
+
+    public void reset() {
+	counts = new long[BUCKETS];
+	total = 0;
+	sum = 0;
+	max = 0;
+    }
+}
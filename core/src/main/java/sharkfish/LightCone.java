@@ -0,0 +1,215 @@
+/* LightCone.java */
+
+package sharkfish;
+
+/**
+ *  The LightCone class finds the state of single cells of an ocean some
+ *  generations ahead without stepping the whole ocean.  A cell k generations
+ *  ahead depends only on the (2k + 1) x (2k + 1) square of cells around it
+ *  now, so cellAt() evaluates that cone one generation at a time, each
+ *  generation a square two cells narrower than the last.  A query costs
+ *  about (4/3)k^3 rule lookups, however large the ocean.
+ *
+ *  The states computed along the way are memoized by cell and generation in
+ *  a direct-mapped cache of fixed capacity, so nearby or repeated queries
+ *  reuse each other's work; a collision simply replaces the older entry.
+ *  A cone wider than the ocean in one dimension wraps around onto itself,
+ *  which the window handles like any other wrapping.  When it is wider in
+ *  both, it would cost more than stepping, so cellAt() steps the whole ocean
+ *  instead and keeps only the latest generation it has stepped, to step on
+ *  from for a later query.  It does the same for an ocean with a
+ *  neighborhood other than Neighborhood.STANDARD, and for a cone whose
+ *  window would not fit in an array.
+ *
+ *  A light cone reads its ocean as it is when queried, so the ocean must not
+ *  change while the cone is in use (Ocean.cellAt() drops its cone when a
+ *  cell changes).  Queries are synchronized, since they share the cache.
+ */
+
+public class LightCone {
+
+    /**
+     *  The number of cache entries of a light cone made by Ocean.cellAt().
+     */
+
+    public final static int CAPACITY = 1 << 16;
+
+    // the widest window whose cells an int[] can hold.
+    private final static int MAX_SIDE = 46340;
+
+    private final Ocean sea;
+    private final int width;
+    private final int height;
+    private final long cells;
+    private final char[] next;
+    private final long[] keys;
+    private final char[] values;
+    private Ocean stepped;
+    private int steppedAhead;
+    private int[] window;
+    private int[] scratch;
+
+    /**
+     *  LightCone() creates a light cone for the current generation of "sea"
+     *  with a cache of "capacity" entries, rounded up to a power of two.
+     *  @param sea is the ocean.
+     *  @param capacity is the number of states the cache holds.
+     */
+
+    public LightCone(Ocean sea, int capacity) {
+	if (capacity <= 0) {
+	    System.out.println("Error: invalid cache capacity");
+	    System.exit(0);
+	}
+	this.sea = sea;
+	width = sea.width();
+	height = sea.height();
+	cells = (long) width * height;
+	next = sea.rules().next;
+	int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+	size = (size < capacity) ? size * 2 : size;
+	keys = new long[size];
+	values = new char[size];
+	stepped = sea;
+	window = new int[0];
+	scratch = new int[0];
+    }
+
+    /**
+     *  cellAt() returns EMPTY, FISH or SHARK: the contents of cell (x, y)
+     *  "generationsAhead" timesteps after the ocean's current generation.
+     *  @param x is the x-coordinate of the cell.
+     *  @param y is the y-coordinate of the cell.
+     *  @param generationsAhead is the number of timesteps ahead, at least 0.
+     */
+
+    public int cellAt(int x, int y, int generationsAhead) {
+	int state = stateAt(x, y, generationsAhead);
+	if (state == 0) {
+	    return Ocean.EMPTY;
+	}
+	return (state == 1) ? Ocean.FISH : Ocean.SHARK;
+    }
+
+    /**
+     *  sharkFeedingAt() returns the hunger of the shark in cell (x, y)
+     *  "generationsAhead" timesteps ahead, like Ocean.sharkFeeding().
+     *  @param x is the x-coordinate of the cell.
+     *  @param y is the y-coordinate of the cell.
+     *  @param generationsAhead is the number of timesteps ahead, at least 0.
+     */
+
+    public int sharkFeedingAt(int x, int y, int generationsAhead) {
+	int state = stateAt(x, y, generationsAhead);
+	if (state < 2) {
+	    System.out.println("Error: hunger value not found");
+	    System.exit(0);
+	}
+	return state - 2;
+    }
+
+    /**
+     *  stateAt() returns the state of cell (x, y) k timesteps ahead, numbered
+     *  as by OceanNode.state().
+     */
+
+    synchronized int stateAt(int x, int y, int k) {
+	if (k < 0) {
+	    System.out.println("Error: generations ahead must not be negative");
+	    System.exit(0);
+	}
+	x = Ocean.wrap(x, width);
+	y = Ocean.wrap(y, height);
+	if (k == 0) {
+	    return sea.state(x, y);
+	}
+	if (((2L * k + 1 > width) && (2L * k + 1 > height))
+	    || (2L * k + 1 > MAX_SIDE) || !sea.neighborhood().isStandard()) {
+	    if (steppedAhead > k) {
+		stepped = sea;
+		steppedAhead = 0;
+	    }
+	    while (steppedAhead < k) {
+		stepped = stepped.timeStep();
+		steppedAhead++;
+	    }
+	    return stepped.state(x, y);
+	}
+	int hit = lookup(k, (long) y * width + x);
+	if (hit >= 0) {
+	    return hit;
+	}
+	// window holds generation d of the square of side 2(k - d) + 1
+	// centered on (x, y), row by row.
+	int side = 2 * k + 1;
+	if (window.length < side * side) {
+	    window = new int[side * side];
+	    scratch = new int[side * side];
+	}
+	for (int j = 0; j < side; j++) {
+	    for (int i = 0; i < side; i++) {
+		window[j * side + i] = sea.state(x - k + i, y - k + j);
+	    }
+	}
+	for (int d = 1; d <= k; d++) {
+	    int inner = side - 2;
+	    int radius = k - d;
+	    for (int j = 0; j < inner; j++) {
+		long row = (long) Ocean.wrap(y - radius + j, height) * width;
+		for (int i = 0; i < inner; i++) {
+		    long cell = row + Ocean.wrap(x - radius + i, width);
+		    int state = lookup(d, cell);
+		    if (state < 0) {
+			state = step(window, side, i + 1, j + 1);
+			store(d, cell, state);
+		    }
+		    scratch[j * inner + i] = state;
+		}
+	    }
+	    int[] swap = window;
+	    window = scratch;
+	    scratch = swap;
+	    side = inner;
+	}
+	return window[0];
+    }
+
+    // returns the next state of element (i, j) of the square "w" of side
+    // "side", whose neighbors all lie in the square.
+    private int step(int[] w, int side, int i, int j) {
+	int fish = 0;
+	int sharks = 0;
+	for (int dj = -1; dj <= 1; dj++) {
+	    int base = (j + dj) * side + i;
+	    for (int di = -1; di <= 1; di++) {
+		int s = w[base + di];
+		fish = fish + ((s == 1) ? 1 : 0);
+		sharks = sharks + ((s >= 2) ? 1 : 0);
+	    }
+	}
+	int before = w[j * side + i];
+	fish = fish - ((before == 1) ? 1 : 0);
+	sharks = sharks - ((before >= 2) ? 1 : 0);
+	return next[RuleTable.index(before, fish, sharks)];
+    }
+
+    // returns the cached state of "cell" d generations ahead, or -1.
+    private int lookup(int d, long cell) {
+	long key = d * cells + cell + 1;
+	int slot = slot(key);
+	return (keys[slot] == key) ? values[slot] : -1;
+    }
+
+    // caches the state of "cell" d generations ahead.
+    private void store(int d, long cell, int state) {
+	long key = d * cells + cell + 1;
+	int slot = slot(key);
+	keys[slot] = key;
+	values[slot] = (char) state;
+    }
+
+    private int slot(long key) {
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+}
@@ -0,0 +1,264 @@
+/* Neighborhood.java */
+
+package sharkfish;
+
+/**
+ *  The Neighborhood class describes which cells count as a cell's neighbors:
+ *  a shape, a radius and what happens at the edges of the ocean.
+ *
+ *    MOORE        the (2r + 1) x (2r + 1) square around the cell;
+ *    VON_NEUMANN  the cells within r steps along rows and columns, a diamond;
+ *    TORUS        the ocean wraps around, as in README;
+ *    BOUNDED      cells beyond the edges are empty.
+ *
+ *  STANDARD, the Moore neighborhood of radius 1 on a torus, is the one in
+ *  README and the only one the engines other than Ocean support.
+ *
+ *  count() finds the neighbor counts of every cell at a cost independent of
+ *  the radius.  The ocean is first padded by r cells on every side (wrapped
+ *  around for TORUS, empty for BOUNDED), so no neighborhood crosses an edge.
+ *  A Moore neighborhood is then a box, counted with a summed-area table.  A
+ *  von Neumann neighborhood is counted directly for the first cell of each
+ *  row from row prefix sums, and then slid along the row: moving one cell
+ *  right adds two diagonal edges on the right and drops two on the left,
+ *  each summed in constant time from prefix sums along the diagonals.
+ *
+ *  The rule tables distinguish at most eight neighbors of each kind, and
+ *  cover every pair of counts up to eight each, so Ocean presents larger
+ *  counts to them as eight.  For the rules of README, which only ask
+ *  whether there are none, one, or two or more of each, that is exact.
+ */
+
+public class Neighborhood {
+
+    public enum Shape { MOORE, VON_NEUMANN }
+
+    public enum Boundary { TORUS, BOUNDED }
+
+    /**
+     *  STANDARD is the Moore neighborhood of radius 1 on a torus.
+     */
+
+    public final static Neighborhood STANDARD =
+	new Neighborhood(Shape.MOORE, 1, Boundary.TORUS);
+
+    private final Shape shape;
+    private final int radius;
+    private final Boundary boundary;
+
+    /**
+     *  Neighborhood() creates a neighborhood of the given shape and radius.
+     *  @param shape is MOORE or VON_NEUMANN.
+     *  @param radius is the radius, at least 1.
+     *  @param boundary is TORUS or BOUNDED.
+     */
+
+    public Neighborhood(Shape shape, int radius, Boundary boundary) {
+	if (radius < 1) {
+	    System.out.println("Error: invalid neighborhood radius");
+	    System.exit(0);
+	}
+	this.shape = shape;
+	this.radius = radius;
+	this.boundary = boundary;
+    }
+
+    /**
+     *  shape() returns the shape of the neighborhood.
+     */
+
+    public Shape shape() {
+	return shape;
+    }
+
+    /**
+     *  radius() returns the radius of the neighborhood.
+     */
+
+    public int radius() {
+	return radius;
+    }
+
+    /**
+     *  boundary() returns what happens at the edges of the ocean.
+     */
+
+    public Boundary boundary() {
+	return boundary;
+    }
+
+    /**
+     *  isStandard() returns true if this is the neighborhood of README.
+     */
+
+    public boolean isStandard() {
+	return (shape == Shape.MOORE) && (radius == 1) && (boundary == Boundary.TORUS);
+    }
+
+    /**
+     *  fits() returns true if the neighborhood can be used on an ocean of
+     *  width i and height j.  On a torus, a neighborhood wider than the
+     *  ocean would wrap around onto itself and is not allowed.
+     */
+
+    public boolean fits(int i, int j) {
+	return (boundary == Boundary.BOUNDED)
+	    || ((2L * radius + 1 <= i) && (2L * radius + 1 <= j));
+    }
+
+    /**
+     *  countAt() returns an array containing the number of fish (index zero)
+     *  and sharks (index one) among the neighbors of cell (x, y) of "sea",
+     *  visiting each neighbor.  It is meant for single cells; count() does
+     *  the whole ocean.
+     */
+
+    int[] countAt(Ocean sea, int x, int y) {
+	int[] tally = new int[2];
+	int width = sea.width();
+	int height = sea.height();
+	for (int dy = -radius; dy <= radius; dy++) {
+	    int reach = (shape == Shape.MOORE) ? radius : radius - Math.abs(dy);
+	    for (int dx = -reach; dx <= reach; dx++) {
+		int c = x + dx;
+		int r = y + dy;
+		boolean outside = (c < 0) || (c >= width) || (r < 0) || (r >= height);
+		if (((dx == 0) && (dy == 0))
+		    || ((boundary == Boundary.BOUNDED) && outside)) {
+		    continue;
+		}
+		int contents = sea.cellContents(c, r);
+		if (contents == Ocean.FISH) {
+		    tally[0]++;
+		} else if (contents == Ocean.SHARK) {
+		    tally[1]++;
+		}
+	    }
+	}
+	return tally;
+    }
+
+    /**
+     *  count() finds the number of fish and sharks among the neighbors of
+     *  every cell of an ocean.
+     *  @param contents holds the ocean's cells row by row, as filled in by
+     *         Ocean.cellContents(byte[]).
+     *  @param width is the width of the ocean.
+     *  @param height is the height of the ocean.
+     *  @param fish receives, at index y * width + x, the number of fish
+     *         among the neighbors of cell (x, y).
+     *  @param sharks receives the number of sharks in the same way.
+     */
+
+    void count(byte[] contents, int width, int height, int[] fish, int[] sharks) {
+	count(contents, width, height, (byte) Ocean.FISH, fish);
+	count(contents, width, height, (byte) Ocean.SHARK, sharks);
+    }
+
+    // counts the neighbors of every cell that hold "kind" into "out".
+    private void count(byte[] contents, int width, int height, byte kind, int[] out) {
+	int r = radius;
+	int wp = width + 2 * r;
+	int hp = height + 2 * r;
+	byte[] g = new byte[wp * hp];
+	for (int py = 0; py < hp; py++) {
+	    int y = py - r;
+	    if ((boundary == Boundary.BOUNDED) && ((y < 0) || (y >= height))) {
+		continue;
+	    }
+	    int row = Ocean.wrap(y, height) * width;
+	    for (int px = 0; px < wp; px++) {
+		int x = px - r;
+		if ((boundary == Boundary.BOUNDED) && ((x < 0) || (x >= width))) {
+		    continue;
+		}
+		g[py * wp + px] = (byte) ((contents[row + Ocean.wrap(x, width)] == kind) ? 1 : 0);
+	    }
+	}
+	if (shape == Shape.MOORE) {
+	    moore(g, wp, hp, width, height, out);
+	} else {
+	    vonNeumann(g, wp, hp, width, height, out);
+	}
+    }
+
+    // counts boxes of the padded grid "g" with a summed-area table.
+    private void moore(byte[] g, int wp, int hp, int width, int height, int[] out) {
+	int r = radius;
+	int stride = wp + 1;
+	int[] s = new int[stride * (hp + 1)];
+	for (int py = 0; py < hp; py++) {
+	    int sum = 0;
+	    for (int px = 0; px < wp; px++) {
+		sum = sum + g[py * wp + px];
+		s[(py + 1) * stride + px + 1] = s[py * stride + px + 1] + sum;
+	    }
+	}
+	int side = 2 * r + 1;
+	for (int y = 0; y < height; y++) {
+	    int top = y * stride;
+	    int bottom = (y + side) * stride;
+	    for (int x = 0; x < width; x++) {
+		int box = s[bottom + x + side] - s[top + x + side] - s[bottom + x] + s[top + x];
+		out[y * width + x] = box - g[(y + r) * wp + x + r];
+	    }
+	}
+    }
+
+    // counts diamonds of the padded grid "g" by sliding them along each row.
+    private void vonNeumann(byte[] g, int wp, int hp, int width, int height,
+			    int[] out) {
+	int r = radius;
+	// row[py * (wp + 1) + px] sums g over cells (0..px - 1, py);
+	// main[py * wp + px] sums g down the diagonal ending at (px, py) from
+	// the upper left, and anti[] from the upper right.
+	int[] row = new int[(wp + 1) * hp];
+	int[] main = new int[wp * hp];
+	int[] anti = new int[wp * hp];
+	for (int py = 0; py < hp; py++) {
+	    for (int px = 0; px < wp; px++) {
+		int v = g[py * wp + px];
+		row[py * (wp + 1) + px + 1] = row[py * (wp + 1) + px] + v;
+		main[py * wp + px] = v + (((px > 0) && (py > 0)) ? main[(py - 1) * wp + px - 1] : 0);
+		anti[py * wp + px] = v + (((px < wp - 1) && (py > 0)) ? anti[(py - 1) * wp + px + 1] : 0);
+	    }
+	}
+	for (int y = 0; y < height; y++) {
+	    int cy = y + r;
+	    int cx = r;
+	    int d = 0;
+	    for (int dy = -r; dy <= r; dy++) {
+		int reach = r - Math.abs(dy);
+		int base = (cy + dy) * (wp + 1);
+		d = d + row[base + cx + reach + 1] - row[base + cx - reach];
+	    }
+	    out[y * width] = d - g[cy * wp + cx];
+	    for (int x = 1; x < width; x++) {
+		cx = x + r;
+		d = d + diagonal(main, wp, cx, cy - r, cx + r, cy)
+		    + antidiagonal(anti, wp, cx + r - 1, cy + 1, cx, cy + r)
+		    - antidiagonal(anti, wp, cx - 1, cy - r, cx - 1 - r, cy)
+		    - diagonal(main, wp, cx - r, cy + 1, cx - 1, cy + r);
+		out[y * width + x] = d - g[cy * wp + cx];
+	    }
+	}
+    }
+
+    // sums the diagonal from (x1, y1) down and right to (x2, y2).
+    private static int diagonal(int[] main, int wp, int x1, int y1, int x2, int y2) {
+	if (y2 < y1) {
+	    return 0;
+	}
+	int before = ((x1 > 0) && (y1 > 0)) ? main[(y1 - 1) * wp + x1 - 1] : 0;
+	return main[y2 * wp + x2] - before;
+    }
+
+    // sums the antidiagonal from (x1, y1) down and left to (x2, y2).
+    private static int antidiagonal(int[] anti, int wp, int x1, int y1, int x2, int y2) {
+	if (y2 < y1) {
+	    return 0;
+	}
+	int before = ((x1 < wp - 1) && (y1 > 0)) ? anti[(y1 - 1) * wp + x1 + 1] : 0;
+	return anti[y2 * wp + x2] - before;
+    }
+}
@@ -0,0 +1,1169 @@
+/* Ocean.java */
+
+package sharkfish;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ *  The Ocean class defines an object that models an ocean full of sharks and
+ *  fish.
+ */
+
+public class Ocean implements OceanBackend {
+    public final static int EMPTY = 0;
+    public final static int SHARK = 1;
+    public final static int FISH = 2;
+
+    private final static OceanNode EMPTY_NODE = new OceanNode(EMPTY, 0);
+    private final static OceanNode FISH_NODE = new OceanNode(FISH, 0);
+
+    /**
+     *  Layout names the order in which an ocean stores its cells.
+     *  ROW_MAJOR stores bands of whole rows, one after another, so the cells
+     *  lie in the order SimText, Simulation and RunLengthEncoding read them.
+     *  Z_ORDER stores 32 x 32 tiles, each in Morton order, so that cells near
+     *  each other in both directions lie near each other in memory.
+     */
+
+    public enum Layout { ROW_MAJOR, Z_ORDER }
+
+    private final static int TILE_SHIFT = 5;
+    private final static int TILE = 1 << TILE_SHIFT;
+    private final static int TILE_MASK = TILE - 1;
+    private final static int BAND_CELLS = 1024;
+
+    // SPREAD[v] is v with a zero bit inserted above each of its bits.
+    private final static int[] SPREAD = new int[TILE];
+
+    static {
+	for (int v = 0; v < TILE; v++) {
+	    for (int b = 0; b < TILE_SHIFT; b++) {
+		SPREAD[v] = SPREAD[v] | (((v >>> b) & 1) << (2 * b));
+	    }
+	}
+    }
+
+    /**
+     *  Grid is the tile geometry of an ocean, shared by all its generations.
+     *  Cell (x, y) is element offset(x, y) of tile tile(x, y), and the cell
+     *  stored at element k of a tile is (x0 + cellX[k], y0 + cellY[k]), where
+     *  (x0, y0) is the tile's corner.
+     */
+
+    private static final class Grid {
+	final Layout layout;
+	final int width;
+	final int height;
+	final int rowShift;
+	final int colShift;
+	final int rowMask;
+	final int tilesAcross;
+	final int tileCells;
+	final int count;
+	final int[] cellX;
+	final int[] cellY;
+
+	Grid(int width, int height, Layout layout) {
+	    this.layout = layout;
+	    this.width = width;
+	    this.height = height;
+	    if (layout == Layout.Z_ORDER) {
+		rowShift = TILE_SHIFT;
+		colShift = TILE_SHIFT;
+		tilesAcross = (width + TILE - 1) >> TILE_SHIFT;
+		tileCells = TILE * TILE;
+	    } else {
+		// a band has a power of two rows, and about BAND_CELLS cells.
+		int shift = 0;
+		while (((2L << shift) * width <= BAND_CELLS) && ((1 << shift) < height)) {
+		    shift++;
+		}
+		rowShift = shift;
+		colShift = 31;
+		tilesAcross = 1;
+		tileCells = (1 << shift) * width;
+	    }
+	    rowMask = (1 << rowShift) - 1;
+	    count = tilesAcross * ((height + rowMask) >> rowShift);
+	    cellX = new int[tileCells];
+	    cellY = new int[tileCells];
+	    for (int k = 0; k < tileCells; k++) {
+		if (layout == Layout.Z_ORDER) {
+		    for (int b = 0; b < TILE_SHIFT; b++) {
+			cellX[k] = cellX[k] | (((k >>> (2 * b)) & 1) << b);
+			cellY[k] = cellY[k] | (((k >>> (2 * b + 1)) & 1) << b);
+		    }
+		} else {
+		    cellX[k] = k % width;
+		    cellY[k] = k / width;
+		}
+	    }
+	}
+
+	// returns the index of the tile holding cell (x, y).
+	int tile(int x, int y) {
+	    return (y >> rowShift) * tilesAcross + (x >> colShift);
+	}
+
+	// returns the index of cell (x, y) within its tile.
+	int offset(int x, int y) {
+	    if (layout == Layout.Z_ORDER) {
+		return SPREAD[x & TILE_MASK] | (SPREAD[y & TILE_MASK] << 1);
+	    }
+	    return (y & rowMask) * width + x;
+	}
+
+	// returns the x-coordinate of the corner of tile t.
+	int x0(int t) {
+	    return (layout == Layout.Z_ORDER) ? (t % tilesAcross) << TILE_SHIFT : 0;
+	}
+
+	// returns the y-coordinate of the corner of tile t.
+	int y0(int t) {
+	    return (t / tilesAcross) << rowShift;
+	}
+    }
+
+    private Grid grid;
+    private OceanNode[][] tiles;
+    private boolean[] shared;
+    private int OceanHeight;
+    private int OceanWidth;
+    private int starveTime;
+    private RuleTable rules;
+    private long generation;
+    private int clock;
+    private long hash;
+    private int fishCount;
+    private int sharkCount;
+    private int[] wheel;
+    private OceanNode lastShark;
+    private int births;
+    private int predation;
+    private int starvations;
+    private boolean areaTables;
+    private boolean recordChanges;
+    private int[] changed;
+    private Neighborhood neighborhood = Neighborhood.STANDARD;
+    private volatile SummedAreaTable areaTable;
+    private volatile LightCone lightCone;
+
+    /*
+     *  Every cell refers to an immutable OceanNode.  All empty cells share
+     *  EMPTY_NODE, all fish share FISH_NODE, and a shark's node records the
+     *  tick of "clock" at which it last ate, so its hunger is clock - fedAt.
+     *  The cells are held in tiles laid out by "grid": cell (x, y) is element
+     *  offset(x, y) of tiles[tile(x, y)], and edge tiles have unused slack.
+     *  timeStep() and cellContents() visit each tile's elements in order, so
+     *  they read memory sequentially in either layout.
+     *
+     *  Generations share tiles.  timeStep() stores a node only where a cell
+     *  changes contents or a shark eats (hungry sharks age by the clock
+     *  advancing, without being touched), and copies a tile only when it
+     *  first stores into it; every tile with no change is shared with the
+     *  previous generation, and shared[] is set on both sides.  addFish() and
+     *  addShark() copy a shared tile before writing to it, so nothing ever
+     *  changes a tile another generation can see.  Once timeStep() has
+     *  returned, an ocean is not modified by stepping it or its successors,
+     *  so any number of threads may read a retained generation while another
+     *  thread steps.
+     *
+     *  "wheel" is a timing wheel of sharks by the tick they last ate:
+     *  wheel[fedAt mod (starveTime + 2)] counts them.  Sharks with hunger h
+     *  are found in slot (clock - h), and the sharks that starve unless they
+     *  eat are those in slot (clock - starveTime).  It has starveTime + 2
+     *  slots rather than starveTime + 1 so that the overdue sharks addShark()
+     *  can create, with hunger starveTime + 1, have a slot of their own.
+     */
+
+    /**
+     *  Ocean() is a constructor that creates an empty ocean having width i and
+     *  height j, in which sharks starve after starveTime timesteps.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     */
+
+    public Ocean(int i, int j, int starveTime) {
+	this(i, j, starveTime, Layout.ROW_MAJOR, true);
+    }
+
+    /**
+     *  Ocean() (with a rule table) is a constructor that creates an empty
+     *  ocean having width i and height j that evolves by "rules" rather than
+     *  the rules of README.  Sharks starve after rules.starveTime() timesteps.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param rules is the compiled rule table.
+     */
+
+    public Ocean(int i, int j, RuleTable rules) {
+	this(i, j, rules, Layout.ROW_MAJOR);
+    }
+
+    /**
+     *  Ocean() (with a rule table and a layout) is a constructor that creates
+     *  an empty ocean having width i and height j that evolves by "rules" and
+     *  stores its cells in "layout".  Its successors keep the same layout.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param rules is the compiled rule table.
+     *  @param layout is the order in which cells are stored.
+     */
+
+    public Ocean(int i, int j, RuleTable rules, Layout layout) {
+	this(i, j, rules.starveTime(), layout, true);
+	this.rules = rules;
+    }
+
+    // the same, but leaves the tiles unallocated if fill is false.
+    private Ocean(int i, int j, int starveTime, Layout layout, boolean fill) {
+	this(i, j, starveTime, null, layout, fill);
+    }
+
+    // the same, on an existing grid unless "grid" is null.
+    private Ocean(int i, int j, int starveTime, Grid grid, Layout layout,
+		  boolean fill) {
+	if ((i <= 0) || (j <= 0)) {
+	    System.out.println("Error: invalid dimensions");
+	    System.exit(0);
+	} if ((starveTime <= 0) || (starveTime > RuleTable.MAX_STARVE_TIME)) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	} else {
+	    OceanWidth = i;
+	    OceanHeight = j;
+	    this.starveTime = starveTime;
+	    rules = RuleTable.standard(starveTime);
+	    wheel = new int[starveTime + 2];
+	    this.grid = (grid == null) ? new Grid(i, j, layout) : grid;
+	    tiles = new OceanNode[this.grid.count][];
+	    shared = new boolean[this.grid.count];
+	    if (fill) {
+		// every tile starts as the same empty tile, copied on write.
+		OceanNode[] blank = blankTile(this.grid);
+		Arrays.fill(tiles, blank);
+		Arrays.fill(shared, true);
+	    }
+	}
+    }
+
+    /**
+     *  seeded() is a factory that creates an ocean having width i and height j
+     *  in which each cell independently holds a fish with probability
+     *  fishDensity, a newborn shark with probability sharkDensity, and is
+     *  empty otherwise.  Rows are seeded in parallel, each from its own
+     *  SplittableRandom split off a master generator seeded with "seed", so
+     *  the result depends only on the parameters, never on the number of
+     *  threads.  The cells are written directly, and the population
+     *  statistics and state hash are combined from per-row totals.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @param fishDensity is the probability that a cell starts with a fish.
+     *  @param sharkDensity is the probability that a cell starts with a shark.
+     *  @param seed is the master seed.
+     *  @return the seeded ocean.
+     */
+
+    public static Ocean seeded(int i, int j, int starveTime, double fishDensity,
+			       double sharkDensity, long seed) {
+	if ((fishDensity < 0) || (sharkDensity < 0)
+	    || (fishDensity + sharkDensity > 1)) {
+	    System.out.println("Error: invalid densities");
+	    System.exit(0);
+	}
+	Ocean sea = new Ocean(i, j, starveTime, Layout.ROW_MAJOR, false);
+	Grid grid = sea.grid;
+	for (int t = 0; t < sea.tiles.length; t++) {
+	    sea.tiles[t] = blankTile(grid);
+	}
+	OceanNode newborn = new OceanNode(SHARK, 0);
+	SplittableRandom master = new SplittableRandom(seed);
+	SplittableRandom[] rows = new SplittableRandom[j];
+	for (int r = 0; r < j; r++) {
+	    rows[r] = master.split();
+	}
+	double sharkBound = fishDensity + sharkDensity;
+	long[] rowHash = new long[j];
+	int[] rowFish = new int[j];
+	int[] rowSharks = new int[j];
+	IntStream.range(0, j).parallel().forEach(r -> {
+	    SplittableRandom random = rows[r];
+	    long h = 0;
+	    int fish = 0;
+	    int sharks = 0;
+	    for (int c = 0; c < i; c++) {
+		OceanNode node = EMPTY_NODE;
+		double d = random.nextDouble();
+		if (d < fishDensity) {
+		    node = FISH_NODE;
+		    fish++;
+		} else if (d < sharkBound) {
+		    node = newborn;
+		    sharks++;
+		}
+		h = h ^ Zobrist.key(r * i + c, node.state(0));
+		sea.tiles[grid.tile(c, r)][grid.offset(c, r)] = node;
+	    }
+	    rowHash[r] = h;
+	    rowFish[r] = fish;
+	    rowSharks[r] = sharks;
+	});
+	for (int r = 0; r < j; r++) {
+	    sea.hash = sea.hash ^ rowHash[r];
+	    sea.fishCount = sea.fishCount + rowFish[r];
+	    sea.sharkCount = sea.sharkCount + rowSharks[r];
+	}
+	sea.wheel[0] = sea.sharkCount;
+	return sea;
+    }
+ 
+    /**
+     *  wrap() is a helper method that adjusts coordinates such that they "wrap"
+     *  around the edges of the ocean. xwrap and ywrap are variations for easier
+     *  implementation.
+     *  @param n is the coordinate.
+     *  @param b is the base dimension of the ocean.
+     *  @return the "wrapped" coordinate.
+     */
+
+    public static int wrap(int n, int b) {
+	int wrapped;
+	if (n >= 0) {
+	    wrapped = (n % b);
+	} else {
+	    wrapped = ((n % b + b) % b);
+	}
+	return wrapped;
+    }	
+
+    // use on x-coordinates only.
+    public int xwrap(int x) {
+	return wrap(x, OceanWidth);
+    }
+    
+    // use on y-coordinates only.
+    public int ywrap(int y) {
+	return wrap(y, OceanHeight);
+    }
+
+    /**
+     *  width() returns the width of an Ocean object.
+     *  @return the width of the ocean.
+     */
+
+    public int width() {
+	return OceanWidth;
+    }
+
+    /**
+     *  height() returns the height of an Ocean object.
+     *  @return the height of the ocean.
+     */
+
+    public int height() {
+	return OceanHeight;
+    }
+
+    /**
+     *  starveTime() returns the number of timesteps sharks survive without food.
+     *  @return the number of timesteps sharks survive without food.
+     */
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    /**
+     *  rules() returns the rule table the ocean evolves by.
+     *  @return the compiled rules.
+     */
+
+    public RuleTable rules() {
+	return rules;
+    }
+
+    /**
+     *  generation() returns the number of timesteps that separate this ocean
+     *  from the ocean it was created as.  A new Ocean is generation zero, and
+     *  timeStep() returns the next generation.
+     *  @return the generation of the ocean.
+     */
+
+    public long generation() {
+	return generation;
+    }
+
+    /**
+     *  stateHash() returns the Zobrist hash of the ocean's cells, including
+     *  the hunger of every shark.  Two oceans of the same size in the same
+     *  state have the same hash, and an empty ocean hashes to zero.  The hash
+     *  is maintained incrementally by addFish(), addShark() and timeStep(),
+     *  which touch it only for cells whose state changes.
+     *  @return the hash of the ocean's state.
+     */
+
+    public long stateHash() {
+	return hash;
+    }
+
+    // used by the backends to label an ocean they have rebuilt.
+    void setGeneration(long generation) {
+	this.generation = generation;
+    }
+
+    // returns this ocean labelled as "generation", sharing every tile with
+    // it copy-on-write; used by CycleDetector to label a fast-forwarded
+    // ocean without touching one its caller holds.
+    Ocean relabeled(long generation) {
+	Ocean copy = new Ocean(OceanWidth, OceanHeight, starveTime, grid, null, false);
+	for (int t = 0; t < tiles.length; t++) {
+	    copy.tiles[t] = tiles[t];
+	    copy.shared[t] = true;
+	    shared[t] = true;
+	}
+	copy.rules = rules;
+	copy.areaTables = areaTables;
+	copy.recordChanges = recordChanges;
+	copy.changed = changed;
+	copy.neighborhood = neighborhood;
+	copy.areaTable = areaTable;
+	copy.generation = generation;
+	copy.clock = clock;
+	copy.hash = hash;
+	copy.fishCount = fishCount;
+	copy.sharkCount = sharkCount;
+	copy.wheel = wheel.clone();
+	copy.births = births;
+	copy.predation = predation;
+	copy.starvations = starvations;
+	return copy;
+    }
+
+    /**
+     *  fishCount() returns the number of fish in the ocean.  Like the other
+     *  population statistics below, it is maintained as a side effect of
+     *  addFish(), addShark() and timeStep(), so it costs O(1).
+     *  @return the number of fish.
+     */
+
+    public long fishCount() {
+	return fishCount;
+    }
+
+    /**
+     *  sharkCount() returns the number of sharks in the ocean.
+     *  @return the number of sharks.
+     */
+
+    public long sharkCount() {
+	return sharkCount;
+    }
+
+    /**
+     *  sharksWithHunger() returns the number of sharks whose hunger, in the
+     *  sense of sharkFeeding(), is h.  Sharks hungrier than starveTime (which
+     *  only addShark() can create) are counted with hunger starveTime.
+     *  @param h is the hunger, from 0 to starveTime.
+     *  @return the number of sharks with that hunger.
+     */
+
+    public int sharksWithHunger(int h) {
+	int n = wheel[slot(clock - h)];
+	if (h == starveTime) {
+	    n = n + wheel[slot(clock - h - 1)];
+	}
+	return n;
+    }
+
+    /**
+     *  hungerHistogram() returns a copy of the shark hunger histogram.
+     *  @return an array of length starveTime + 1 whose index h is
+     *          sharksWithHunger(h).
+     */
+
+    public int[] hungerHistogram() {
+	int[] histogram = new int[starveTime + 1];
+	for (int h = 0; h <= starveTime; h++) {
+	    histogram[h] = sharksWithHunger(h);
+	}
+	return histogram;
+    }
+
+    /**
+     *  births() returns the number of fish and sharks born in the timestep
+     *  that produced this ocean, or zero if it was not produced by timeStep().
+     *  @return the number of births.
+     */
+
+    public long births() {
+	return births;
+    }
+
+    /**
+     *  predation() returns the number of fish eaten in the timestep that
+     *  produced this ocean, including fish replaced by a newborn shark.
+     *  @return the number of fish eaten.
+     */
+
+    public long predation() {
+	return predation;
+    }
+
+    /**
+     *  starvations() returns the number of sharks that starved in the
+     *  timestep that produced this ocean.
+     *  @return the number of sharks starved.
+     */
+
+    public long starvations() {
+	return starvations;
+    }
+
+    // returns the slot of the timing wheel for sharks that ate at tick t.
+    private int slot(int t) {
+	return Math.floorMod(t, starveTime + 2);
+    }
+
+    // returns a node for a shark that last ate at tick t, sharing the node of
+    // the most recent shark to eat at t when there is one.
+    private OceanNode sharkNode(int t) {
+	if ((lastShark == null) || (lastShark.fedAt() != t)) {
+	    lastShark = new OceanNode(SHARK, t);
+	}
+	return lastShark;
+    }
+
+    // returns a tile of "grid" in which every cell, slack included, is empty.
+    private static OceanNode[] blankTile(Grid grid) {
+	OceanNode[] tile = new OceanNode[grid.tileCells];
+	Arrays.fill(tile, EMPTY_NODE);
+	return tile;
+    }
+
+    // returns the node in cell (x, y), which must already be wrapped.
+    private OceanNode node(int x, int y) {
+	return tiles[grid.tile(x, y)][grid.offset(x, y)];
+    }
+
+    /**
+     *  layout() returns the order in which the ocean stores its cells.
+     */
+
+    public Layout layout() {
+	return grid.layout;
+    }
+
+    // puts "node" in cell (x, y), keeping the hash and the population
+    // statistics current, and copying the cell's tile first if another
+    // generation shares it.
+    private void place(int x, int y, OceanNode node) {
+	int t = grid.tile(x, y);
+	int o = grid.offset(x, y);
+	OceanNode cur = tiles[t][o];
+	if (cur == node) {
+	    return;
+	}
+	replaced(x, y, cur, cur.state(clock), node, node.state(clock));
+	areaTable = null;
+	lightCone = null;
+	changed = null;
+	if (shared[t]) {
+	    tiles[t] = tiles[t].clone();
+	    shared[t] = false;
+	}
+	tiles[t][o] = node;
+    }
+
+    // folds the replacement of node "cur" (in state "before") by node "node"
+    // (in state "after") in cell (x, y) into the hash and the population
+    // statistics.
+    private void replaced(int x, int y, OceanNode cur, int before,
+			  OceanNode node, int after) {
+	if (before != after) {
+	    int cell = y * OceanWidth + x;
+	    hash = hash ^ Zobrist.key(cell, before) ^ Zobrist.key(cell, after);
+	}
+	if (cur.tag() == FISH) {
+	    fishCount--;
+	} else if (cur.tag() == SHARK) {
+	    sharkCount--;
+	    wheel[slot(cur.fedAt())]--;
+	}
+	if (node.tag() == FISH) {
+	    fishCount++;
+	} else if (node.tag() == SHARK) {
+	    sharkCount++;
+	    wheel[slot(node.fedAt())]++;
+	}
+    }
+
+    /**
+     *  addFish() places a fish in cell (x, y) if the cell is empty.  If the
+     *  cell is already occupied, leave the cell as it is.
+     *  @param x is the x-coordinate of the cell to place a fish in.
+     *  @param y is the y-coordinate of the cell to place a fish in.
+     */
+
+    public void addFish(int x, int y) {
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	place(xcoord, ycoord, FISH_NODE);
+    }
+
+    /**
+     *  addShark() (with two parameters) places a newborn shark in cell (x, y) if
+     *  the cell is empty.  A "newborn" shark is equivalent to a shark that has
+     *  just eaten.  If the cell is already occupied, leave the cell as it is.
+     *  @param x is the x-coordinate of the cell to place a shark in.
+     *  @param y is the y-coordinate of the cell to place a shark in.
+     */
+
+    public void addShark(int x, int y) {
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	place(xcoord, ycoord, sharkNode(clock));
+    }
+
+    /**
+     *  cellContents() returns EMPTY if cell (x, y) is empty, FISH if it contains
+     *  a fish, and SHARK if it contains a shark.
+     *  @param x is the x-coordinate of the cell whose contents are queried.
+     *  @param y is the y-coordinate of the cell whose contents are queried.
+     */
+
+    public int cellContents(int x, int y) {
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	OceanNode cur = node(xcoord, ycoord);
+	return cur.tag();
+    }
+
+    /**
+     *  cellContents() (with one parameter) copies the contents of every cell,
+     *  as returned by cellContents(x, y), into an array, row by row: cell
+     *  (x, y) goes to index y * width() + x.  It is the fast way to take a
+     *  snapshot of the whole ocean, since it reads the cells in the order
+     *  they are stored.
+     *  @param contents is an array of at least width() * height() bytes.
+     */
+
+    public void cellContents(byte[] contents) {
+	int[] cellX = grid.cellX;
+	int[] cellY = grid.cellY;
+	for (int t = 0; t < tiles.length; t++) {
+	    OceanNode[] tile = tiles[t];
+	    int x0 = grid.x0(t);
+	    int y0 = grid.y0(t);
+	    for (int k = 0; k < tile.length; k++) {
+		int x = x0 + cellX[k];
+		int y = y0 + cellY[k];
+		if ((x < OceanWidth) && (y < OceanHeight)) {
+		    contents[y * OceanWidth + x] = (byte) tile[k].tag();
+		}
+	    }
+	}
+    }
+
+    /**
+     *  copyOf() is a factory that copies any ocean backend into an Ocean that
+     *  evolves by "rules", keeping its generation and the hunger of every
+     *  shark.
+     *  @param sea is the ocean to copy.
+     *  @param rules is the compiled rule table, for sea.starveTime().
+     *  @return the copy.
+     */
+
+    public static Ocean copyOf(OceanBackend sea, RuleTable rules) {
+	Layout layout = (sea instanceof Ocean) ? ((Ocean) sea).layout() : Layout.ROW_MAJOR;
+	Ocean copy = new Ocean(sea.width(), sea.height(), rules, layout);
+	if (sea instanceof Ocean) {
+	    copy.neighborhood = ((Ocean) sea).neighborhood;
+	}
+	for (int y = 0; y < sea.height(); y++) {
+	    for (int x = 0; x < sea.width(); x++) {
+		int contents = sea.cellContents(x, y);
+		if (contents == FISH) {
+		    copy.addFish(x, y);
+		} else if (contents == SHARK) {
+		    copy.addShark(x, y, sea.sharkFeeding(x, y));
+		}
+	    }
+	}
+	copy.generation = sea.generation();
+	return copy;
+    }
+
+    /**
+     *  toOcean() returns this ocean, which is already an Ocean.
+     *  @return this ocean.
+     */
+
+    public Ocean toOcean() {
+	return this;
+    }
+
+    /**
+     *  timeStep() performs a simulation timestep as described in README.
+     *  The new generation shares every tile in which nothing changed with
+     *  this one, and sharks that go hungry are not written at all.
+     *  The step's births(), predation() and starvations() are recorded on the
+     *  new ocean and reported to SimulationMetrics, which counts eaten fish
+     *  and starved sharks together as deaths.  The next generation is
+     *  computed from this one alone; this ocean is left unchanged.
+     *  @return an ocean representing the elapse of one timestep.
+     */
+
+    public Ocean timeStep() {
+	Step step = new Step();
+	step.advance(Integer.MAX_VALUE);
+	return step.finish();
+    }
+
+    /**
+     *  beginStep() starts a timestep that can be carried out a few tiles at a
+     *  time, so that a scheduler can interleave the steps of many oceans (see
+     *  SessionManager).  timeStep() is beginStep() run to the end.
+     */
+
+    Step beginStep() {
+	return new Step();
+    }
+
+    /**
+     *  Step is a timestep of this ocean in progress.  advance() steps the next
+     *  tiles, and finish() returns the new generation once every tile is done.
+     *  Only one thread may use a Step at a time.
+     */
+
+    final class Step {
+	private final Ocean nextOcean;
+	private final int[] fishAround;
+	private final int[] sharksAround;
+	private final StepEvent event;
+	private final boolean measured;
+	private int next;
+	private int births;
+	private int predation;
+	private int starvations;
+	private long elapsed;
+	private long allocated;
+	private int[] changes;
+	private int changeCount;
+
+	private Step() {
+	    event = SimulationMetrics.beginStep();
+	    measured = (event != null);
+	    nextOcean = new Ocean(OceanWidth, OceanHeight, starveTime, grid, null,
+				  false);
+	    nextOcean.rules = rules;
+	    nextOcean.areaTables = areaTables;
+	    nextOcean.recordChanges = recordChanges;
+	    nextOcean.neighborhood = neighborhood;
+	    nextOcean.generation = generation + 1;
+	    nextOcean.clock = clock + 1;
+	    nextOcean.hash = hash;
+	    nextOcean.fishCount = fishCount;
+	    nextOcean.sharkCount = sharkCount;
+	    nextOcean.wheel = wheel.clone();
+	    changes = recordChanges ? new int[64] : null;
+	    if (neighborhood.isStandard()) {
+		fishAround = null;
+		sharksAround = null;
+	    } else {
+		// any other neighborhood is counted for the whole ocean at once.
+		byte[] contents = new byte[OceanWidth * OceanHeight];
+		cellContents(contents);
+		fishAround = new int[contents.length];
+		sharksAround = new int[contents.length];
+		neighborhood.count(contents, OceanWidth, OceanHeight, fishAround,
+				   sharksAround);
+	    }
+	}
+
+	/**
+	 *  advance() steps the next tiles, at least one and about "cells" cells'
+	 *  worth, and returns true once every tile has been stepped.
+	 */
+
+	boolean advance(int cells) {
+	    long start = 0;
+	    long before = 0;
+	    if (measured) {
+		start = System.nanoTime();
+		before = SimulationMetrics.allocatedBytes();
+	    }
+	    int count = Math.max(1, cells / grid.tileCells);
+	    int end = (int) Math.min((long) next + count, tiles.length);
+	    for (; next < end; next++) {
+		stepTile(next);
+	    }
+	    if (measured) {
+		elapsed = elapsed + System.nanoTime() - start;
+		allocated = allocated + SimulationMetrics.allocatedBytes() - before;
+	    }
+	    return next == tiles.length;
+	}
+
+	/**
+	 *  finish() returns the new generation, once advance() has returned true.
+	 */
+
+	Ocean finish() {
+	    nextOcean.births = births;
+	    nextOcean.predation = predation;
+	    nextOcean.starvations = starvations;
+	    if (changes != null) {
+		nextOcean.changed = Arrays.copyOf(changes, changeCount);
+		if (grid.layout == Layout.Z_ORDER) {
+		    Arrays.sort(nextOcean.changed);
+		}
+	    }
+	    if (areaTables) {
+		nextOcean.areaTable = SummedAreaTable.of(nextOcean);
+	    }
+	    if (measured) {
+		SimulationMetrics.recordStep(event, nextOcean.generation, OceanWidth,
+					     OceanHeight, births,
+					     predation + starvations, starvations,
+					     elapsed, allocated);
+	    }
+	    return nextOcean;
+	}
+
+	// steps tile t into nextOcean.
+	private void stepTile(int t) {
+	    char[] table = rules.next;
+	    byte[] events = rules.events;
+	    int[] cellX = grid.cellX;
+	    int[] cellY = grid.cellY;
+	    OceanNode[] tile = tiles[t];
+	    OceanNode[] nextTile = tile;
+	    int x0 = grid.x0(t);
+	    int y0 = grid.y0(t);
+	    // the cells are visited in the order they are stored.
+	    for (int o = 0; o < tile.length; o++) {
+		int c = x0 + cellX[o];
+		int r = y0 + cellY[o];
+		if ((c >= OceanWidth) || (r >= OceanHeight)) {
+		    continue;
+		}
+		int around;
+		if (fishAround == null) {
+		    around = neighbors(c, r);
+		} else {
+		    int i = r * OceanWidth + c;
+		    around = Math.min(fishAround[i], 8) | (Math.min(sharksAround[i], 8) << 4);
+		}
+		OceanNode cur = tile[o];
+		int before = cur.state(clock);
+		int k = RuleTable.index(before, around & 15, around >>> 4);
+		int after = table[k];
+		int e = events[k];
+		births = births + ((e >>> 2) & 1);
+		predation = predation + ((e >>> 3) & 1);
+		starvations = starvations + ((e >>> 4) & 1);
+		if ((e & RuleTable.SHARK_AFTER) != 0) {
+		    int fedAt = nextOcean.clock - (after - 2);
+		    if ((cur.tag() == SHARK) && (cur.fedAt() == fedAt)) {
+			// a shark that did not eat; the clock ages it.
+			int cell = r * OceanWidth + c;
+			nextOcean.hash = nextOcean.hash ^ Zobrist.key(cell, before)
+			    ^ Zobrist.key(cell, after);
+			continue;
+		    }
+		}
+		// unlike the tallies above, choosing and storing the node
+		// branches per cell.
+		OceanNode nxt = (after == 0) ? EMPTY_NODE : (after == 1) ? FISH_NODE
+		    : nextOcean.sharkNode(nextOcean.clock - (after - 2));
+		if (nxt != cur) {
+		    if (nextTile == tile) {
+			nextTile = tile.clone();
+		    }
+		    nextTile[o] = nxt;
+		    nextOcean.replaced(c, r, cur, before, nxt, after);
+		    if (changes != null) {
+			if (changeCount == changes.length) {
+			    changes = Arrays.copyOf(changes, 2 * changeCount);
+			}
+			changes[changeCount++] = r * OceanWidth + c;
+		    }
+		}
+	    }
+	    nextOcean.tiles[t] = nextTile;
+	    if (nextTile == tile) {
+		nextOcean.shared[t] = true;
+		shared[t] = true;
+	    }
+	}
+    }
+
+    /**
+     *  setNeighborhood() sets which cells count as neighbors from now on, for
+     *  this ocean and every later generation.  The rule tables see at most
+     *  eight neighbors of each kind; see Neighborhood.
+     *  @param neighborhood is the neighborhood, which must fit the ocean.
+     */
+
+    public void setNeighborhood(Neighborhood neighborhood) {
+	if (!neighborhood.fits(OceanWidth, OceanHeight)) {
+	    System.out.println("Error: the neighborhood does not fit the ocean");
+	    System.exit(0);
+	}
+	this.neighborhood = neighborhood;
+	lightCone = null;
+    }
+
+    /**
+     *  neighborhood() returns which cells count as neighbors.
+     */
+
+    public Neighborhood neighborhood() {
+	return neighborhood;
+    }
+
+    /**
+     *  buildAreaTables() sets whether timeStep() builds the summed-area table
+     *  of each new generation as soon as it has stepped it, so that
+     *  countInRect() never waits.  The setting passes to every later
+     *  generation.  Without it, areaTable() builds a generation's table the
+     *  first time it is asked for.
+     *  @param on is true to build a table for every generation.
+     */
+
+    public void buildAreaTables(boolean on) {
+	areaTables = on;
+    }
+
+    /**
+     *  recordChanges() sets whether timeStep() records which cells of each
+     *  new generation differ from the generation before, for changedCells().
+     *  The setting passes to every later generation.
+     *  @param on is true to record the changed cells.
+     */
+
+    public void recordChanges(boolean on) {
+	recordChanges = on;
+    }
+
+    /**
+     *  changedCells() returns the cells, as indices y * width() + x in
+     *  increasing order, whose contents or shark hunger timeStep() changed
+     *  other than by a shark going hungry, when the previous generation was
+     *  stepped with recordChanges(true); otherwise, or once addFish() or
+     *  addShark() has changed a cell since, it returns null.  Hungry sharks
+     *  are not listed, since every shark that did not eat ages alike.  The
+     *  array must not be modified.
+     */
+
+    public int[] changedCells() {
+	return changed;
+    }
+
+    // returns the setting of buildAreaTables(), for SessionManager.
+    boolean buildsAreaTables() {
+	return areaTables;
+    }
+
+    // used by SessionManager to restore the rules of a paged-in ocean.
+    void setRules(RuleTable rules) {
+	this.rules = rules;
+	lightCone = null;
+    }
+
+    /**
+     *  areaTable() returns the summed-area table of this generation, building
+     *  it if timeStep() has not.  The table is kept until a cell changes.
+     */
+
+    public SummedAreaTable areaTable() {
+	SummedAreaTable table = areaTable;
+	if (table == null) {
+	    table = SummedAreaTable.of(this);
+	    areaTable = table;
+	}
+	return table;
+    }
+
+    // returns this generation's summed-area table if it has been built, or
+    // null; used by OceanView, which builds one only for large views.
+    SummedAreaTable builtAreaTable() {
+	return areaTable;
+    }
+
+    /**
+     *  countInRect() returns an array containing the number of fish (index
+     *  zero) and sharks (index one) in the rectangle of cells from (x0, y0)
+     *  to (x1, y1), inclusive, wrapping around the edges; see
+     *  SummedAreaTable.countInRect().  After the first query of a generation
+     *  it takes constant time.
+     *  @param x0 is the x-coordinate of the rectangle's left column.
+     *  @param y0 is the y-coordinate of the rectangle's top row.
+     *  @param x1 is the x-coordinate of the rectangle's right column.
+     *  @param y1 is the y-coordinate of the rectangle's bottom row.
+     */
+
+    public int[] countInRect(int x0, int y0, int x1, int y1) {
+	return areaTable().countInRect(x0, y0, x1, y1);
+    }
+
+    /**
+     *  cellAt() returns EMPTY, FISH or SHARK: the contents of cell (x, y)
+     *  "generationsAhead" timesteps from now, computed from the cell's light
+     *  cone rather than by stepping the whole ocean (see LightCone).  States
+     *  computed on the way are cached for later queries of this generation.
+     *  @param x is the x-coordinate of the cell.
+     *  @param y is the y-coordinate of the cell.
+     *  @param generationsAhead is the number of timesteps ahead, at least 0.
+     */
+
+    public int cellAt(int x, int y, int generationsAhead) {
+	LightCone cone = lightCone;
+	if (cone == null) {
+	    cone = new LightCone(this, LightCone.CAPACITY);
+	    lightCone = cone;
+	}
+	return cone.cellAt(x, y, generationsAhead);
+    }
+
+    /**
+     *  transition() applies the rules of README to one cell.  States are
+     *  numbered as by OceanNode.state(): 0 is empty, 1 is a fish, and 2 + h
+     *  is a shark with hunger h.  It is the specification RuleTable.standard()
+     *  compiles, and every engine steps with that table, so they cannot
+     *  disagree about the rules.
+     *  @param state is the state of the cell.
+     *  @param fish is the number of fish among the cell's eight neighbors.
+     *  @param sharks is the number of sharks among the cell's eight neighbors.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @return the state of the cell one timestep later.
+     */
+
+    static int transition(int state, int fish, int sharks, int starveTime) {
+	switch (state) {
+	 case 0:
+	    if (fish >= 2) {
+		return (sharks <= 1) ? 1 : 2;
+	    }
+	    return 0;
+	 case 1:
+	    if (sharks == 0) {
+		return 1;
+	    }
+	    return (sharks == 1) ? 0 : 2;
+	 default:
+	    if (fish > 0) {
+		return 2;
+	    }
+	    return (state - 1 > starveTime) ? 0 : state + 1;
+	}
+    }
+
+    // returns the number of fish (bits 0-3) and sharks (bits 4-7) among
+    // the eight neighbors of cell (x, y), which must already be wrapped.
+    private int neighbors(int x, int y) {
+	int left = (x == 0) ? OceanWidth - 1 : x - 1;
+	int right = (x == OceanWidth - 1) ? 0 : x + 1;
+	int up = (y == 0) ? OceanHeight - 1 : y - 1;
+	int down = (y == OceanHeight - 1) ? 0 : y + 1;
+	return around(left, up) + around(x, up) + around(right, up)
+	    + around(left, y) + around(right, y)
+	    + around(left, down) + around(x, down) + around(right, down);
+    }
+
+    // returns 1 if cell (x, y) holds a fish and 16 if it holds a shark.
+    private int around(int x, int y) {
+	int tag = node(x, y).tag();
+	return (tag == FISH) ? 1 : (tag == SHARK) ? 16 : 0;
+    }
+
+    /**
+     *  surroundings() returns an array containing the contents of a cells 
+     *  surroundings, in the ocean's neighborhood.
+     *  The index at zero returns the number of fish surrounding the cell.
+     *  The index at one returns the number of sharks surrounding the cell.
+     */
+    
+    public int[] surroundings(int x, int y) {
+	if (!neighborhood.isStandard()) {
+	    return neighborhood.countAt(this, xwrap(x), ywrap(y));
+	}
+	int[] tally = new int[2];
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	for (int c = xcoord - 1; c <= xcoord + 1; c++) {
+	    for (int r = ycoord - 1; r <= ycoord + 1; r++) {
+		switch (cellContents(xwrap(c), ywrap(r))) {
+		 case FISH:
+		    tally[0]++;
+		    break;
+		 case SHARK:
+		    tally[1]++;
+		    break;
+		 default: break;
+		}
+	    }
+	}	
+	switch (cellContents(x, y)) {
+	 case FISH:
+	    tally[0]--;
+	    break;
+	 case SHARK:
+	    tally[1]--;
+	    break;
+	 default: break;
+	}
+	return tally;
+    }
+
+    /**
+     *  addShark() (with three parameters) places a shark in cell (x, y) if the
+     *  cell is empty.  The shark's hunger is represented by the third parameter.
+     *  If the cell is already occupied, leave the cell as it is.  You will need
+     *  this method to help convert run-length encodings to Oceans.
+     *  @param x is the x-coordinate of the cell to place a shark in.
+     *  @param y is the y-coordinate of the cell to place a shark in.
+     *  @param feeding is an integer that indicates the shark's hunger.  You may
+     *         encode it any way you want; for instance, "feeding" may be the
+     *         last timestep the shark was fed, or the amount of time that has
+     *         passed since the shark was last fed, or the amount of time left
+     *         before the shark will starve.  It's up to you, but be consistent.
+     */
+
+    public void addShark(int x, int y, int feeding) {
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	int hunger = Math.min(Math.max(feeding, 0), starveTime + 1);
+	place(xcoord, ycoord, sharkNode(clock - hunger));
+    }
+
+    /**
+     *  sharkFeeding() returns an integer that indicates the hunger of the shark
+     *  in cell (x, y), using the same "feeding" representation as the parameter
+     *  to addShark() described above.  If cell (x, y) does not contain a shark,
+     *  then its return value is undefined--that is, anything you want.
+     *  Normally, this method should not be called if cell (x, y) does not
+     *  contain a shark.  You will need this method to help convert Oceans to
+     *  run-length encodings.
+     *  @param x is the x-coordinate of the cell whose contents are queried.
+     *  @param y is the y-coordinate of the cell whose contents are queried.
+     */
+
+    public int sharkFeeding(int x, int y) {
+	int xcoord = xwrap(x);
+	int ycoord = ywrap(y);
+	OceanNode cur = node(xcoord, ycoord);
+	return cur.hunger(clock);
+	}
+
+    // returns the state of cell (x, y), numbered as by OceanNode.state().
+    int state(int x, int y) {
+	return node(xwrap(x), ywrap(y)).state(clock);
+    }
+
+
+}
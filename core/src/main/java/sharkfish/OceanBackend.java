@@ -0,0 +1,109 @@
+/* OceanBackend.java */
+
+package sharkfish;
+
+/**
+ *  The OceanBackend interface is what every ocean representation offers:
+ *  Ocean (dense, one node per cell), OffHeapOcean (dense, one byte per cell
+ *  outside the heap), SparseOcean (only the occupied cells) and RunLengthOcean
+ *  (runs of identical cells).  They step by the same rules and agree on
+ *  generation, population counts and state hash, so AdaptiveOcean can move a
+ *  simulation from one to another as it evolves.
+ *
+ *  Cells are addressed as in Ocean, with x and y wrapping around.
+ */
+
+public interface OceanBackend {
+
+    /**
+     *  width() returns the width of the ocean.
+     */
+
+    int width();
+
+    /**
+     *  height() returns the height of the ocean.
+     */
+
+    int height();
+
+    /**
+     *  starveTime() returns the number of timesteps sharks survive without
+     *  food.
+     */
+
+    int starveTime();
+
+    /**
+     *  generation() returns the number of timesteps since the ocean was
+     *  created.
+     */
+
+    long generation();
+
+    /**
+     *  stateHash() returns the Zobrist hash of the ocean's state, as defined
+     *  by Ocean.stateHash().
+     */
+
+    long stateHash();
+
+    /**
+     *  fishCount() returns the number of fish in the ocean.
+     */
+
+    long fishCount();
+
+    /**
+     *  sharkCount() returns the number of sharks in the ocean.
+     */
+
+    long sharkCount();
+
+    /**
+     *  births() returns the number of fish and sharks born in the last
+     *  timestep.
+     */
+
+    long births();
+
+    /**
+     *  predation() returns the number of fish eaten in the last timestep.
+     */
+
+    long predation();
+
+    /**
+     *  starvations() returns the number of sharks that starved in the last
+     *  timestep.
+     */
+
+    long starvations();
+
+    /**
+     *  cellContents() returns Ocean.EMPTY, Ocean.FISH or Ocean.SHARK for cell
+     *  (x, y).
+     */
+
+    int cellContents(int x, int y);
+
+    /**
+     *  sharkFeeding() returns the hunger of the shark in cell (x, y).
+     */
+
+    int sharkFeeding(int x, int y);
+
+    /**
+     *  timeStep() returns the ocean one timestep later.  Some backends
+     *  advance in place and return themselves; others return a new ocean and
+     *  leave this one unchanged.
+     */
+
+    OceanBackend timeStep();
+
+    /**
+     *  toOcean() returns the ocean as an Ocean, in the same generation.
+     */
+
+    Ocean toOcean();
+}
@@ -0,0 +1,243 @@
+/* OceanFile.java */
+
+package sharkfish;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ *  The OceanFile class describes the file format read and written by
+ *  StreamingStepper: a 128-byte header followed by the cells of one
+ *  generation, row by row, one byte per cell in the packed cell format (0 is
+ *  empty, 1 is a fish, and 2 + h is a shark with hunger h).
+ *
+ *  The header holds, in big-endian order: a magic number, width, height and
+ *  starveTime (ints), then generation, fish count, shark count, state hash,
+ *  births, predation and starvations (longs).  An OceanFile object is such a
+ *  header; the cells stay in the file.
+ */
+
+public class OceanFile {
+
+    public final static int HEADER = 128;
+
+    private final static int MAGIC = 0x53465331;
+
+    int width;
+    int height;
+    int starveTime;
+    long generation;
+    long fishCount;
+    long sharkCount;
+    long hash;
+    long births;
+    long predation;
+    long starvations;
+
+    OceanFile(int width, int height, int starveTime) {
+	if ((width <= 0) || (height <= 0)) {
+	    System.out.println("Error: invalid dimensions");
+	    System.exit(0);
+	} if ((starveTime <= 0) || (starveTime > OffHeapOcean.MAX_STARVE_TIME)) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	}
+	this.width = width;
+	this.height = height;
+	this.starveTime = starveTime;
+    }
+
+    public int width() {
+	return width;
+    }
+
+    public int height() {
+	return height;
+    }
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    public long generation() {
+	return generation;
+    }
+
+    public long fishCount() {
+	return fishCount;
+    }
+
+    public long sharkCount() {
+	return sharkCount;
+    }
+
+    public long stateHash() {
+	return hash;
+    }
+
+    public long births() {
+	return births;
+    }
+
+    public long predation() {
+	return predation;
+    }
+
+    public long starvations() {
+	return starvations;
+    }
+
+    /**
+     *  readHeader() reads the header of an ocean file.
+     */
+
+    public static OceanFile readHeader(Path file) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    return readHeader(channel, file);
+	}
+    }
+
+    static OceanFile readHeader(FileChannel channel, Path file) throws IOException {
+	ByteBuffer b = ByteBuffer.allocate(HEADER);
+	while (b.hasRemaining()) {
+	    if (channel.read(b, b.position()) < 0) {
+		throw new IOException(file + " is not an ocean file");
+	    }
+	}
+	if (b.getInt(0) != MAGIC) {
+	    throw new IOException(file + " is not an ocean file");
+	}
+	OceanFile f = new OceanFile(b.getInt(4), b.getInt(8), b.getInt(12));
+	f.generation = b.getLong(16);
+	f.fishCount = b.getLong(24);
+	f.sharkCount = b.getLong(32);
+	f.hash = b.getLong(40);
+	f.births = b.getLong(48);
+	f.predation = b.getLong(56);
+	f.starvations = b.getLong(64);
+	return f;
+    }
+
+    void writeHeader(FileChannel channel) throws IOException {
+	ByteBuffer b = ByteBuffer.allocate(HEADER);
+	b.putInt(0, MAGIC);
+	b.putInt(4, width);
+	b.putInt(8, height);
+	b.putInt(12, starveTime);
+	b.putLong(16, generation);
+	b.putLong(24, fishCount);
+	b.putLong(32, sharkCount);
+	b.putLong(40, hash);
+	b.putLong(48, births);
+	b.putLong(56, predation);
+	b.putLong(64, starvations);
+	while (b.hasRemaining()) {
+	    channel.write(b, b.position());
+	}
+    }
+
+    /**
+     *  write() saves an Ocean as an ocean file.  Ocean files hold neither
+     *  rules nor a neighborhood, so "sea" must follow the rules of README in
+     *  the standard neighborhood.
+     *  @param sea is the ocean to save.
+     *  @param file is the file to write; any existing file is replaced.
+     */
+
+    public static void write(Ocean sea, Path file) throws IOException {
+	if (!PackedRows.supports(sea)) {
+	    System.out.println("Error: ocean files hold only the standard rules and"
+			       + " neighborhood");
+	    System.exit(0);
+	}
+	OceanFile f = new OceanFile(sea.width(), sea.height(), sea.starveTime());
+	f.generation = sea.generation();
+	f.births = sea.births();
+	f.predation = sea.predation();
+	f.starvations = sea.starvations();
+	try (RowWriter out = new RowWriter(file, StreamingStepper.DEFAULT_BUFFER)) {
+	    byte[] row = new byte[f.width];
+	    for (int y = 0; y < f.height; y++) {
+		for (int x = 0; x < f.width; x++) {
+		    int state = PackedRows.pack(sea.state(x, y), f.starveTime);
+		    row[x] = (byte) state;
+		    f.count(y * (long) f.width + x, state);
+		}
+		out.writeRow(row);
+	    }
+	    out.finish(f);
+	}
+    }
+
+    /**
+     *  seeded() writes an ocean file holding the same ocean as
+     *  Ocean.seeded() with the same parameters, one row at a time, so the
+     *  ocean never has to fit in memory.
+     */
+
+    public static OceanFile seeded(Path file, int i, int j, int starveTime,
+				   double fishDensity, double sharkDensity,
+				   long seed) throws IOException {
+	if ((fishDensity < 0) || (sharkDensity < 0)
+	    || (fishDensity + sharkDensity > 1)) {
+	    System.out.println("Error: invalid densities");
+	    System.exit(0);
+	}
+	OceanFile f = new OceanFile(i, j, starveTime);
+	SplittableRandom master = new SplittableRandom(seed);
+	try (RowWriter out = new RowWriter(file, StreamingStepper.DEFAULT_BUFFER)) {
+	    byte[] row = new byte[i];
+	    for (int y = 0; y < j; y++) {
+		SplittableRandom random = master.split();
+		for (int x = 0; x < i; x++) {
+		    double d = random.nextDouble();
+		    int state = (d < fishDensity) ? 1 : (d < fishDensity + sharkDensity) ? 2 : 0;
+		    row[x] = (byte) state;
+		    f.count(y * (long) i + x, state);
+		}
+		out.writeRow(row);
+	    }
+	    out.finish(f);
+	}
+	return f;
+    }
+
+    /**
+     *  toOcean() loads an ocean file into an Ocean.
+     */
+
+    public static Ocean toOcean(Path file) throws IOException {
+	try (RowReader in = new RowReader(file, StreamingStepper.DEFAULT_BUFFER)) {
+	    OceanFile f = in.header();
+	    Ocean sea = new Ocean(f.width, f.height, f.starveTime);
+	    byte[] row = new byte[f.width];
+	    for (int y = 0; y < f.height; y++) {
+		in.readRow(row);
+		for (int x = 0; x < f.width; x++) {
+		    int state = Byte.toUnsignedInt(row[x]);
+		    if (state == 1) {
+			sea.addFish(x, y);
+		    } else if (state >= 2) {
+			sea.addShark(x, y, state - 2);
+		    }
+		}
+	    }
+	    sea.setGeneration(f.generation);
+	    return sea;
+	}
+    }
+
+    // adds a cell in "state" at row-major index "cell" to the counts and hash.
+    private void count(long cell, int state) {
+	if (state == 1) {
+	    fishCount++;
+	} else if (state >= 2) {
+	    sharkCount++;
+	}
+	hash = hash ^ Zobrist.key(cell, state);
+    }
+}
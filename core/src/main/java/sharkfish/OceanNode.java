@@ -0,0 +1,68 @@
+/* OceanNode.java */
+
+package sharkfish;
+
+/**
+ *  OceanNode is a class used internally by the Ocean class.
+ *  Each OceanNode stores two variables: the tag of the 
+ *  animal(either EMPTY,FISH, or SHARK) and, for a shark, the
+ *  tick of the Ocean's clock at which it last ate (or was born).
+ *  A shark's hunger is the number of ticks since then, so it
+ *  grows without the node ever being written.
+ *
+ *  OceanNodes never change once created.  That lets an Ocean
+ *  share one node among all the cells with the same contents,
+ *  and lets successive generations share the nodes of cells
+ *  that did not change.
+ */
+
+public class OceanNode {
+    
+    private final int tag;
+    private final int fedAt;
+
+    public OceanNode() {
+	this(Ocean.EMPTY, 0);
+    }
+
+    public OceanNode(int tag, int fedAt) {
+	this.tag = tag;
+	this.fedAt = fedAt;
+    }
+
+    public int tag() {
+	return tag;
+    }
+
+    public int fedAt() {
+	return fedAt;
+    }
+
+    /**
+     *  hunger() returns the hunger of a shark node at the given tick of the
+     *  clock of the Ocean that holds it.
+     */
+
+    public int hunger(int clock) {
+	if (tag != Ocean.SHARK) {
+	    System.out.println("Error: hunger value not found");
+	    System.exit(0);
+	}
+	return clock - fedAt;
+    }
+
+    /**
+     *  state() returns a single number for the contents of the node at the
+     *  given tick: 0 if it is empty, 1 if it holds a fish, and 2 + hunger if
+     *  it holds a shark.
+     */
+
+    public int state(int clock) {
+	if (tag == Ocean.SHARK) {
+	    return 2 + clock - fedAt;
+	}
+	return tag == Ocean.FISH ? 1 : 0;
+    }
+ 
+   
+}
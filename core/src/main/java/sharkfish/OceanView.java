@@ -0,0 +1,269 @@
+/* OceanView.java */
+
+package sharkfish;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
+
+/**
+ *  The OceanView class draws a window onto an ocean of any size into an
+ *  image of fixed size, so oceans wider than the screen can be shown.  The
+ *  view has a zoom level, as in a mipmap:
+ *
+ *    level k > 0   each pixel shows a 2^k x 2^k block of cells, colored by
+ *                  the fraction of the block that is fish (green) and sharks
+ *                  (red), on white water;
+ *    level 0       each pixel shows one cell;
+ *    level k < 0   each cell is a 2^-k x 2^-k square of pixels.
+ *
+ *  and an origin, the cell at the view's upper left corner.  The view wraps
+ *  around the edges of the ocean like neighborhoods do.
+ *
+ *  render() costs about one lookup per pixel, however large the ocean.  A
+ *  view that covers a quarter of the ocean or more reads its block counts
+ *  from the generation's summed-area table (see Ocean.areaTable()), which
+ *  serves every level and alignment at once and is built in parallel from
+ *  the flat cell data, once per generation; Ocean.buildAreaTables() moves
+ *  that work into timeStep().  A smaller view, such as one zoomed in on
+ *  part of a large ocean, reads only the visible cells.  Rows of pixels are
+ *  computed in parallel, and an unchanged view of the same generation is
+ *  not computed again.
+ */
+
+public class OceanView {
+
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private int level;
+    private int originX;
+    private int originY;
+    private Ocean drawn;
+    private boolean moved = true;
+
+    /**
+     *  OceanView() creates a view "width" pixels wide and "height" pixels
+     *  high, at level 0 with its origin at cell (0, 0).
+     *  @param width is the width of the image in pixels.
+     *  @param height is the height of the image in pixels.
+     */
+
+    public OceanView(int width, int height) {
+	if ((width <= 0) || (height <= 0)) {
+	    System.out.println("Error: invalid view size");
+	    System.exit(0);
+	}
+	this.width = width;
+	this.height = height;
+	image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     *  level() returns the zoom level of the view.
+     */
+
+    public int level() {
+	return level;
+    }
+
+    /**
+     *  originX() returns the x-coordinate of the cell at the upper left.
+     */
+
+    public int originX() {
+	return originX;
+    }
+
+    /**
+     *  originY() returns the y-coordinate of the cell at the upper left.
+     */
+
+    public int originY() {
+	return originY;
+    }
+
+    /**
+     *  cellsWide() returns the number of cells across the view.
+     */
+
+    public long cellsWide() {
+	return cellsAcross(width);
+    }
+
+    /**
+     *  cellsHigh() returns the number of cells down the view.
+     */
+
+    public long cellsHigh() {
+	return cellsAcross(height);
+    }
+
+    /**
+     *  setLevel() sets the zoom level, keeping the origin.
+     *  @param level is the zoom level, from -8 to 15.
+     */
+
+    public synchronized void setLevel(int level) {
+	if ((level < -8) || (level > 15)) {
+	    System.out.println("Error: invalid zoom level");
+	    System.exit(0);
+	}
+	this.level = level;
+	moved = true;
+    }
+
+    /**
+     *  zoom() changes the zoom level by "levels", keeping the cell at the
+     *  center of the view in place.  Positive levels zoom out.
+     *  @param levels is the number of levels to zoom out (or in, if negative).
+     */
+
+    public synchronized void zoom(int levels) {
+	long centerX = originX + cellsAcross(width) / 2;
+	long centerY = originY + cellsAcross(height) / 2;
+	setLevel(Math.max(-8, Math.min(15, level + levels)));
+	originX = (int) (centerX - cellsAcross(width) / 2);
+	originY = (int) (centerY - cellsAcross(height) / 2);
+    }
+
+    /**
+     *  pan() moves the view by (dx, dy) cells.
+     */
+
+    public synchronized void pan(int dx, int dy) {
+	originX = originX + dx;
+	originY = originY + dy;
+	moved = true;
+    }
+
+    /**
+     *  fit() puts the whole of an i x j ocean in the view at the most
+     *  detailed level at which it fits, with its origin at cell (0, 0).
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     */
+
+    public synchronized void fit(int i, int j) {
+	int fitting = -8;
+	while ((cellsAcross(width, fitting) < i) || (cellsAcross(height, fitting) < j)) {
+	    fitting++;
+	}
+	setLevel(fitting);
+	originX = 0;
+	originY = 0;
+    }
+
+    /**
+     *  render() draws the current generation of "sea" as seen by the view
+     *  and returns the image.  The same image is returned by every call and
+     *  is overwritten by the next one.
+     *  @param sea is the ocean.
+     *  @return the image, width x height pixels.
+     */
+
+    public synchronized BufferedImage render(Ocean sea) {
+	if ((sea == drawn) && !moved) {
+	    return image;
+	}
+	int oceanWidth = sea.width();
+	int oceanHeight = sea.height();
+	originX = Ocean.wrap(originX, oceanWidth);
+	originY = Ocean.wrap(originY, oceanHeight);
+	long across = Math.min(cellsAcross(width), oceanWidth);
+	long down = Math.min(cellsAcross(height), oceanHeight);
+	SummedAreaTable table = sea.builtAreaTable();
+	if ((table == null) && (across * down * 4 >= (long) oceanWidth * oceanHeight)) {
+	    table = sea.areaTable();
+	}
+	// a block wider than the ocean would cover some cells twice.
+	int block = (level > 0) ? (1 << level) : 1;
+	int blockWidth = Math.min(block, oceanWidth);
+	int blockHeight = Math.min(block, oceanHeight);
+	if (table != null) {
+	    renderFrom(table, blockWidth, blockHeight);
+	} else {
+	    renderFrom(visible(sea, (int) across, (int) down), (int) across, (int) down,
+		       blockWidth, blockHeight);
+	}
+	drawn = sea;
+	moved = false;
+	return image;
+    }
+
+    // colors each pixel by the counts of its block, the first blockWidth x
+    // blockHeight cells of it, read from "table".
+    private void renderFrom(SummedAreaTable table, int blockWidth, int blockHeight) {
+	int block = (level > 0) ? (1 << level) : 1;
+	int shift = (level < 0) ? -level : 0;
+	IntStream.range(0, height).parallel().forEach(py -> {
+	    int y0 = originY + ((level > 0) ? py * block : (py >> shift));
+	    int row = py * width;
+	    for (int px = 0; px < width; px++) {
+		int x0 = originX + ((level > 0) ? px * block : (px >> shift));
+		int x1 = x0 + blockWidth - 1;
+		int y1 = y0 + blockHeight - 1;
+		pixels[row + px] = color(table.fishInRect(x0, y0, x1, y1),
+					 table.sharksInRect(x0, y0, x1, y1),
+					 blockWidth * blockHeight);
+	    }
+	});
+    }
+
+    // colors each pixel by the counts of its block, read from "cells", the
+    // across x down cells from the origin.
+    private void renderFrom(byte[] cells, int across, int down,
+			    int blockWidth, int blockHeight) {
+	int block = (level > 0) ? (1 << level) : 1;
+	int shift = (level < 0) ? -level : 0;
+	IntStream.range(0, height).parallel().forEach(py -> {
+	    int y0 = (level > 0) ? py * block : (py >> shift);
+	    int row = py * width;
+	    for (int px = 0; px < width; px++) {
+		int x0 = (level > 0) ? px * block : (px >> shift);
+		int fish = 0;
+		int sharks = 0;
+		for (int y = y0; y < y0 + blockHeight; y++) {
+		    int base = Ocean.wrap(y, down) * across;
+		    for (int x = x0; x < x0 + blockWidth; x++) {
+			int cell = cells[base + Ocean.wrap(x, across)];
+			fish = fish + ((cell == Ocean.FISH) ? 1 : 0);
+			sharks = sharks + ((cell == Ocean.SHARK) ? 1 : 0);
+		    }
+		}
+		pixels[row + px] = color(fish, sharks, blockWidth * blockHeight);
+	    }
+	});
+    }
+
+    // reads the across x down cells from the origin, row by row.
+    private byte[] visible(Ocean sea, int across, int down) {
+	byte[] cells = new byte[across * down];
+	IntStream.range(0, down).parallel().forEach(y -> {
+	    for (int x = 0; x < across; x++) {
+		cells[y * across + x] = (byte) sea.cellContents(originX + x, originY + y);
+	    }
+	});
+	return cells;
+    }
+
+    // returns the number of cells spanned by "pixels" pixels at this level.
+    private long cellsAcross(int pixels) {
+	return cellsAcross(pixels, level);
+    }
+
+    private static long cellsAcross(int pixels, int level) {
+	return (level >= 0) ? ((long) pixels << level) : ((pixels + (1 << -level) - 1) >> -level);
+    }
+
+    // returns the RGB color of a block of "cells" cells holding "fish" fish
+    // and "sharks" sharks: white water, green fish and red sharks, mixed.
+    private static int color(int fish, int sharks, int cells) {
+	int red = 255 - 255 * fish / cells;
+	int green = 255 - 255 * sharks / cells;
+	int blue = 255 - 255 * (fish + sharks) / cells;
+	return (red << 16) | (green << 8) | blue;
+    }
+}
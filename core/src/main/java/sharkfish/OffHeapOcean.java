@@ -0,0 +1,445 @@
+/* OffHeapOcean.java */
+
+package sharkfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ *  The OffHeapOcean class models the same ocean as Ocean, but keeps its cells
+ *  outside the Java heap, so its size is limited by memory or disk rather
+ *  than by the heap, and the garbage collector never scans it.  The cells
+ *  live either in direct memory (allocate()) or in a memory-mapped file
+ *  (create() and open()), and a 100000 x 100000 ocean needs only a few
+ *  megabytes of heap to step.
+ *
+ *  Each cell is one byte in the packed cell format: 0 is empty, 1 is a fish,
+ *  and 2 + h is a shark with hunger h.  This limits starveTime to
+ *  MAX_STARVE_TIME.  The store holds two planes of width * height cells, the
+ *  current generation and the one being computed, and timeStep() swaps them.
+ *
+ *  Unlike Ocean.timeStep(), timeStep() advances this ocean in place and
+ *  returns it, so the usual "sea = sea.timeStep()" loop works unchanged but
+ *  earlier generations are not kept.  Hashes and population counts agree
+ *  with an Ocean in the same state; they are longs here because an
+ *  off-heap ocean may hold more than 2^31 cells.
+ *
+ *  A mapped ocean's file starts with a 64-byte header (dimensions,
+ *  starveTime, generation, current plane, population counts and state hash),
+ *  which is rewritten after every timestep, so the file can be reopened
+ *  later with open().
+ */
+
+public class OffHeapOcean implements OceanBackend, Closeable {
+
+    public final static int MAX_STARVE_TIME = 252;
+
+    private final static int MAGIC = 0x53464F31;
+    private final static int HEADER = 64;
+    private final static int BAND = 64;
+
+    private int width;
+    private int height;
+    private int starveTime;
+    private long cells;
+    private CellStore store;
+    private int plane;
+    private long generation;
+    private long hash;
+    private long fishCount;
+    private long sharkCount;
+    private long births;
+    private long predation;
+    private long starvations;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+
+    private OffHeapOcean(int i, int j, int starveTime) {
+	if ((i <= 0) || (j <= 0)) {
+	    System.out.println("Error: invalid dimensions");
+	    System.exit(0);
+	} if ((starveTime <= 0) || (starveTime > MAX_STARVE_TIME)) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	}
+	width = i;
+	height = j;
+	this.starveTime = starveTime;
+	cells = (long) i * j;
+    }
+
+    /**
+     *  allocate() creates an empty ocean having width i and height j, in which
+     *  sharks starve after starveTime timesteps, in direct memory.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @return the new ocean.
+     */
+
+    public static OffHeapOcean allocate(int i, int j, int starveTime) {
+	OffHeapOcean sea = new OffHeapOcean(i, j, starveTime);
+	sea.store = CellStore.allocate(2 * sea.cells);
+	return sea;
+    }
+
+    /**
+     *  create() creates an empty ocean having width i and height j, in which
+     *  sharks starve after starveTime timesteps, in a memory-mapped file.  Any
+     *  existing file is replaced.  The file takes 64 + 2 * i * j bytes.
+     *  @param file is the file to create.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @return the new ocean.
+     */
+
+    public static OffHeapOcean create(Path file, int i, int j, int starveTime)
+	throws IOException {
+	OffHeapOcean sea = new OffHeapOcean(i, j, starveTime);
+	sea.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				       StandardOpenOption.TRUNCATE_EXISTING,
+				       StandardOpenOption.READ,
+				       StandardOpenOption.WRITE);
+	sea.header = sea.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+	sea.store = CellStore.map(sea.channel, HEADER, 2 * sea.cells);
+	sea.writeHeader();
+	return sea;
+    }
+
+    /**
+     *  open() reopens an ocean saved in a file by create().
+     *  @param file is the file to open.
+     *  @return the ocean, in the generation last written to the file.
+     */
+
+    public static OffHeapOcean open(Path file) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+					       StandardOpenOption.WRITE);
+	MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+	if (header.getInt(0) != MAGIC) {
+	    channel.close();
+	    throw new IOException(file + " is not an off-heap ocean");
+	}
+	OffHeapOcean sea = new OffHeapOcean(header.getInt(4), header.getInt(8),
+					    header.getInt(12));
+	sea.channel = channel;
+	sea.header = header;
+	sea.generation = header.getLong(16);
+	sea.plane = header.getInt(24);
+	sea.fishCount = header.getLong(32);
+	sea.sharkCount = header.getLong(40);
+	sea.hash = header.getLong(48);
+	sea.store = CellStore.map(channel, HEADER, 2 * sea.cells);
+	return sea;
+    }
+
+    /**
+     *  copyOf() copies any ocean backend into a new ocean in direct memory,
+     *  keeping its generation and the hunger of every shark.
+     *  @param sea is the ocean to copy; its starveTime must be at most
+     *         MAX_STARVE_TIME, and it must follow the rules of README in the
+     *         standard neighborhood.
+     *  @return the copy.
+     */
+
+    public static OffHeapOcean copyOf(OceanBackend sea) {
+	if (!PackedRows.supports(sea)) {
+	    System.out.println("Error: an OffHeapOcean steps only the standard rules"
+			       + " and neighborhood");
+	    System.exit(0);
+	}
+	OffHeapOcean copy = allocate(sea.width(), sea.height(), sea.starveTime());
+	byte[] row = new byte[copy.width];
+	for (int y = 0; y < copy.height; y++) {
+	    long base = (long) y * copy.width;
+	    for (int x = 0; x < copy.width; x++) {
+		int contents = sea.cellContents(x, y);
+		int state = 0;
+		if (contents == Ocean.FISH) {
+		    state = 1;
+		    copy.fishCount++;
+		} else if (contents == Ocean.SHARK) {
+		    state = PackedRows.pack(2 + Math.max(sea.sharkFeeding(x, y), 0),
+					    copy.starveTime);
+		    copy.sharkCount++;
+		}
+		row[x] = (byte) state;
+		copy.hash = copy.hash ^ Zobrist.key(base + x, state);
+	    }
+	    copy.store.put(base, row, copy.width);
+	}
+	copy.generation = sea.generation();
+	return copy;
+    }
+
+    /**
+     *  toOcean() copies the current generation into an Ocean.
+     */
+
+    public Ocean toOcean() {
+	return Ocean.copyOf(this, RuleTable.standard(starveTime));
+    }
+
+    private void writeHeader() {
+	if (header != null) {
+	    ByteBuffer h = header;
+	    h.putInt(0, MAGIC);
+	    h.putInt(4, width);
+	    h.putInt(8, height);
+	    h.putInt(12, starveTime);
+	    h.putLong(16, generation);
+	    h.putInt(24, plane);
+	    h.putLong(32, fishCount);
+	    h.putLong(40, sharkCount);
+	    h.putLong(48, hash);
+	}
+    }
+
+    /**
+     *  flush() writes a mapped ocean's cells and header back to its file.
+     */
+
+    public void flush() {
+	if (header != null) {
+	    store.force();
+	    header.force();
+	}
+    }
+
+    /**
+     *  close() flushes a mapped ocean and closes its file.  The ocean must not
+     *  be used afterward.
+     */
+
+    public void close() throws IOException {
+	if (channel != null) {
+	    flush();
+	    channel.close();
+	}
+    }
+
+    public int width() {
+	return width;
+    }
+
+    public int height() {
+	return height;
+    }
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    public long generation() {
+	return generation;
+    }
+
+    public long stateHash() {
+	return hash;
+    }
+
+    public long fishCount() {
+	return fishCount;
+    }
+
+    public long sharkCount() {
+	return sharkCount;
+    }
+
+    public long births() {
+	return births;
+    }
+
+    public long predation() {
+	return predation;
+    }
+
+    public long starvations() {
+	return starvations;
+    }
+
+    // returns the index in the store of cell (x, y) of the current plane.
+    private long index(int x, int y) {
+	return plane * cells + (long) Ocean.wrap(y, height) * width + Ocean.wrap(x, width);
+    }
+
+    // sets cell (x, y) to "after", keeping the hash and counts current.
+    private void set(int x, int y, int after) {
+	long i = index(x, y);
+	int before = store.get(i);
+	if (before != after) {
+	    long cell = i - plane * cells;
+	    hash = hash ^ Zobrist.key(cell, before) ^ Zobrist.key(cell, after);
+	    fishCount = fishCount - (before == 1 ? 1 : 0) + (after == 1 ? 1 : 0);
+	    sharkCount = sharkCount - (before >= 2 ? 1 : 0) + (after >= 2 ? 1 : 0);
+	    store.set(i, after);
+	}
+    }
+
+    /**
+     *  addFish() places a fish in cell (x, y), like Ocean.addFish().
+     */
+
+    public void addFish(int x, int y) {
+	set(x, y, 1);
+    }
+
+    /**
+     *  addShark() (with two parameters) places a newborn shark in cell (x, y),
+     *  like Ocean.addShark().
+     */
+
+    public void addShark(int x, int y) {
+	set(x, y, 2);
+    }
+
+    /**
+     *  addShark() (with three parameters) places a shark with hunger "feeding"
+     *  in cell (x, y), like Ocean.addShark().  Hunger above starveTime + 1 is
+     *  stored as starveTime + 1, which behaves identically in timeStep(): the
+     *  shark starves unless it eats.
+     */
+
+    public void addShark(int x, int y, int feeding) {
+	set(x, y, PackedRows.pack(2 + Math.max(feeding, 0), starveTime));
+    }
+
+    /**
+     *  cellContents() returns EMPTY, FISH or SHARK, like Ocean.cellContents().
+     */
+
+    public int cellContents(int x, int y) {
+	int state = store.get(index(x, y));
+	if (state == 0) {
+	    return Ocean.EMPTY;
+	}
+	return (state == 1) ? Ocean.FISH : Ocean.SHARK;
+    }
+
+    /**
+     *  sharkFeeding() returns the hunger of the shark in cell (x, y), like
+     *  Ocean.sharkFeeding().
+     */
+
+    public int sharkFeeding(int x, int y) {
+	int state = store.get(index(x, y));
+	if (state < 2) {
+	    System.out.println("Error: hunger value not found");
+	    System.exit(0);
+	}
+	return state - 2;
+    }
+
+    /**
+     *  surroundings() returns the number of fish (index zero) and sharks
+     *  (index one) around cell (x, y), like Ocean.surroundings().
+     */
+
+    public int[] surroundings(int x, int y) {
+	int[] tally = new int[2];
+	for (int c = x - 1; c <= x + 1; c++) {
+	    for (int r = y - 1; r <= y + 1; r++) {
+		if ((c != x) || (r != y)) {
+		    int state = store.get(index(c, r));
+		    if (state == 1) {
+			tally[0]++;
+		    } else if (state >= 2) {
+			tally[1]++;
+		    }
+		}
+	    }
+	}
+	return tally;
+    }
+
+    /**
+     *  timeStep() advances the ocean one timestep, following the same rules
+     *  as Ocean.timeStep(), and returns it.  Bands of rows are stepped in
+     *  parallel; each band reads its rows into a three-row window of small
+     *  heap arrays and writes each finished row to the other plane.
+     *  @return this ocean, now one generation later.
+     */
+
+    public OffHeapOcean timeStep() {
+	StepEvent event = SimulationMetrics.beginStep();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytesByAllThreads();
+	}
+	int bands = (height + BAND - 1) / BAND;
+	long[][] totals = new long[bands][];
+	IntStream.range(0, bands).parallel().forEach(b -> {
+	    totals[b] = stepBand(store.view(), b * BAND, Math.min(height, (b + 1) * BAND));
+	});
+	long h = hash;
+	long fish = 0;
+	long sharks = 0;
+	long born = 0;
+	long eaten = 0;
+	long starved = 0;
+	for (long[] t : totals) {
+	    h = h ^ t[PackedRows.HASH];
+	    fish = fish + t[PackedRows.FISH];
+	    sharks = sharks + t[PackedRows.SHARKS];
+	    born = born + t[PackedRows.BIRTHS];
+	    eaten = eaten + t[PackedRows.PREDATION];
+	    starved = starved + t[PackedRows.STARVATIONS];
+	}
+	plane = 1 - plane;
+	generation++;
+	hash = h;
+	fishCount = fish;
+	sharkCount = sharks;
+	births = born;
+	predation = eaten;
+	starvations = starved;
+	writeHeader();
+	if (measured) {
+	    SimulationMetrics.recordStep(event, generation, width, height, births,
+					 predation + starvations, starvations,
+					 System.nanoTime() - start,
+					 SimulationMetrics.allocatedBytesByAllThreads() - allocated);
+	}
+	return this;
+    }
+
+    /**
+     *  stepBand() steps rows [y0, y1) from the current plane into the other
+     *  one.
+     *  @return the band's tallies, indexed as in PackedRows.
+     */
+
+    private long[] stepBand(CellStore cellStore, int y0, int y1) {
+	long from = plane * cells;
+	long to = (1 - plane) * cells;
+	PackedRows kernel = new PackedRows(width, RuleTable.standard(starveTime));
+	byte[] above = new byte[width];
+	byte[] row = new byte[width];
+	byte[] below = new byte[width];
+	byte[] out = new byte[width];
+	long[] t = new long[PackedRows.TALLIES];
+	cellStore.get(from + (long) Ocean.wrap(y0 - 1, height) * width, above, width);
+	cellStore.get(from + (long) y0 * width, row, width);
+	for (int y = y0; y < y1; y++) {
+	    cellStore.get(from + (long) Ocean.wrap(y + 1, height) * width, below, width);
+	    long base = (long) y * width;
+	    kernel.stepRow(above, row, below, out, base, t);
+	    cellStore.put(to + base, out, width);
+	    byte[] swap = above;
+	    above = row;
+	    row = below;
+	    below = swap;
+	}
+	return t;
+    }
+}
@@ -0,0 +1,138 @@
+/* PackedRows.java */
+
+package sharkfish;
+
+/**
+ *  PackedRows is a class used internally by the engines that store cells in
+ *  the packed cell format: one byte per cell, 0 for empty, 1 for a fish, and
+ *  2 + h for a shark with hunger h.  It steps one row at a time given the
+ *  rows above and below it, so its callers decide where rows come from.
+ */
+
+final class PackedRows {
+
+    /**
+     *  The indices of the tallies filled in by stepRow().
+     */
+
+    final static int HASH = 0;
+    final static int FISH = 1;
+    final static int SHARKS = 2;
+    final static int BIRTHS = 3;
+    final static int PREDATION = 4;
+    final static int STARVATIONS = 5;
+    final static int TALLIES = 6;
+
+    private final int width;
+    private final char[] next;
+    private final byte[] events;
+    private final int[] colFish;
+    private final int[] colSharks;
+
+    /**
+     *  PackedRows() creates a row stepper for rows of the given width that
+     *  follows "rules".  Each thread needs its own, since it keeps scratch
+     *  arrays.
+     */
+
+    PackedRows(int width, RuleTable rules) {
+	this.width = width;
+	next = rules.next;
+	events = rules.events;
+	colFish = new int[width];
+	colSharks = new int[width];
+    }
+
+    /**
+     *  pack() returns the packed form of a cell state as numbered by
+     *  OceanNode.state().  Hunger above starveTime + 1 is stored as
+     *  starveTime + 1, which behaves identically: the shark starves unless it
+     *  eats.
+     */
+
+    static int pack(int state, int starveTime) {
+	return Math.min(state, starveTime + 3);
+    }
+
+    /**
+     *  supports() returns true if "sea" follows the rules of README in the
+     *  standard neighborhood.  Packed cells carry neither rules nor a
+     *  neighborhood, so the packed engines step nothing else.
+     */
+
+    static boolean supports(OceanBackend sea) {
+	RuleTable standard = RuleTable.standard(sea.starveTime());
+	if (sea instanceof Ocean) {
+	    return (((Ocean) sea).rules() == standard)
+		&& ((Ocean) sea).neighborhood().isStandard();
+	} else if (sea instanceof SparseOcean) {
+	    return ((SparseOcean) sea).rules() == standard;
+	} else if (sea instanceof RunLengthOcean) {
+	    return ((RunLengthOcean) sea).rules() == standard;
+	} else if (sea instanceof AdaptiveOcean) {
+	    return (((AdaptiveOcean) sea).rules() == standard)
+		&& supports(((AdaptiveOcean) sea).backend());
+	}
+	return true;
+    }
+
+    /**
+     *  stepRow() computes the next generation of "row" into "out", following
+     *  the rule table, and adds the row's contribution to the tallies.
+     *  The x direction wraps around.  For tiny oceans "above", "row" and
+     *  "below" may be the same array.
+     *  @param above is the row above, in the current generation.
+     *  @param row is the row to step.
+     *  @param below is the row below, in the current generation.
+     *  @param out receives the next generation of the row.
+     *  @param base is the row-major index of the row's first cell, for the
+     *         Zobrist hash.
+     *  @param t receives the hash change, fish, sharks, births, predation
+     *         and starvations at the indices named above.
+     */
+
+    void stepRow(byte[] above, byte[] row, byte[] below, byte[] out, long base,
+		 long[] t) {
+	for (int x = 0; x < width; x++) {
+	    int a = above[x];
+	    int m = row[x];
+	    int b = below[x];
+	    colFish[x] = (a == 1 ? 1 : 0) + (m == 1 ? 1 : 0) + (b == 1 ? 1 : 0);
+	    colSharks[x] = ((a != 0) && (a != 1) ? 1 : 0) + ((m != 0) && (m != 1) ? 1 : 0)
+		+ ((b != 0) && (b != 1) ? 1 : 0);
+	}
+	long hash = 0;
+	int fish = 0;
+	int sharks = 0;
+	int births = 0;
+	int predation = 0;
+	int starvations = 0;
+	for (int x = 0; x < width; x++) {
+	    int left = (x == 0) ? width - 1 : x - 1;
+	    int right = (x == width - 1) ? 0 : x + 1;
+	    int before = Byte.toUnsignedInt(row[x]);
+	    int fishnum = colFish[left] + colFish[x] + colFish[right]
+		- (before == 1 ? 1 : 0);
+	    int sharksnum = colSharks[left] + colSharks[x] + colSharks[right]
+		- (before >= 2 ? 1 : 0);
+	    int k = RuleTable.index(before, fishnum, sharksnum);
+	    int after = next[k];
+	    int e = events[k];
+	    out[x] = (byte) after;
+	    fish = fish + (e & RuleTable.FISH_AFTER);
+	    sharks = sharks + ((e >>> 1) & 1);
+	    births = births + ((e >>> 2) & 1);
+	    predation = predation + ((e >>> 3) & 1);
+	    starvations = starvations + ((e >>> 4) & 1);
+	    if ((e & RuleTable.CHANGED) != 0) {
+		hash = hash ^ Zobrist.key(base + x, before) ^ Zobrist.key(base + x, after);
+	    }
+	}
+	t[HASH] = t[HASH] ^ hash;
+	t[FISH] = t[FISH] + fish;
+	t[SHARKS] = t[SHARKS] + sharks;
+	t[BIRTHS] = t[BIRTHS] + births;
+	t[PREDATION] = t[PREDATION] + predation;
+	t[STARVATIONS] = t[STARVATIONS] + starvations;
+    }
+}
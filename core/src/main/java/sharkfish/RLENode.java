@@ -1,5 +1,7 @@
 /* RLENode.java */
 
+package sharkfish;
+
 /**
  *  RLENode is a class used internally by the RunLengthEncoding class.
  *  The RLENodes are meant to be used in a doubly linked list with
@@ -15,6 +17,7 @@ public class RLENode {
     private int tag;
     private int iters;
     private int hunger;
+    int start;          // the first cell of the run, while its encoding is indexed
 
     public RLENode(){
 	prev = null;
@@ -0,0 +1,117 @@
+/* RowReader.java */
+
+package sharkfish;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  RowReader is a class used internally by StreamingStepper and OceanFile.
+ *  It reads the rows of an ocean file in order through two large direct
+ *  buffers: while the caller consumes one, a background thread fills the
+ *  other from the next part of the file.
+ */
+
+final class RowReader implements Closeable {
+
+    private FileChannel channel;
+    private OceanFile header;
+    private long position;
+    private long end;
+    private ByteBuffer current;
+    private ByteBuffer spare;
+    private Future<?> pending;
+    private ExecutorService ahead;
+
+    RowReader(Path file, int bufferSize) throws IOException {
+	channel = FileChannel.open(file, StandardOpenOption.READ);
+	try {
+	    header = OceanFile.readHeader(channel, file);
+	} catch (IOException e) {
+	    channel.close();
+	    throw e;
+	}
+	position = OceanFile.HEADER;
+	end = position + (long) header.width * header.height;
+	int size = (int) Math.min(bufferSize, end - position);
+	current = ByteBuffer.allocateDirect(size);
+	spare = ByteBuffer.allocateDirect(size);
+	current.limit(0);
+	ahead = Executors.newSingleThreadExecutor(r -> {
+	    Thread t = new Thread(r, "ocean-read-ahead");
+	    t.setDaemon(true);
+	    return t;
+	});
+	readAhead();
+    }
+
+    OceanFile header() {
+	return header;
+    }
+
+    // starts filling the spare buffer from the next unread part of the file.
+    private void readAhead() {
+	if (position >= end) {
+	    pending = null;
+	    return;
+	}
+	ByteBuffer b = spare;
+	long at = position;
+	b.clear();
+	b.limit((int) Math.min(b.capacity(), end - at));
+	position = at + b.limit();
+	pending = ahead.submit(() -> {
+	    while (b.hasRemaining()) {
+		if (channel.read(b, at + b.position()) < 0) {
+		    throw new EOFException("ocean file is truncated");
+		}
+	    }
+	    b.flip();
+	    return null;
+	});
+    }
+
+    /**
+     *  readRow() fills "row" with the next row of the file.
+     */
+
+    void readRow(byte[] row) throws IOException {
+	int done = 0;
+	while (done < row.length) {
+	    if (!current.hasRemaining()) {
+		if (pending == null) {
+		    throw new EOFException("read past the last row");
+		}
+		try {
+		    pending.get();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new IOException(e);
+		} catch (ExecutionException e) {
+		    throw new IOException(e.getCause());
+		}
+		ByteBuffer swap = current;
+		current = spare;
+		spare = swap;
+		readAhead();
+	    }
+	    int n = Math.min(row.length - done, current.remaining());
+	    current.get(row, done, n);
+	    done = done + n;
+	}
+    }
+
+    public void close() throws IOException {
+	ahead.shutdownNow();
+	channel.close();
+    }
+}
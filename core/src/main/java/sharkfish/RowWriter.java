@@ -0,0 +1,91 @@
+/* RowWriter.java */
+
+package sharkfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  RowWriter is a class used internally by StreamingStepper and OceanFile.
+ *  It writes the rows of an ocean file in order through one large direct
+ *  buffer, and writes the header last, once the totals are known.
+ */
+
+final class RowWriter implements Closeable {
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long position;
+
+    RowWriter(Path file, int bufferSize) throws IOException {
+	channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				   StandardOpenOption.TRUNCATE_EXISTING,
+				   StandardOpenOption.WRITE);
+	buffer = ByteBuffer.allocateDirect(bufferSize);
+	position = OceanFile.HEADER;
+    }
+
+    /**
+     *  writeRow() appends a row.
+     */
+
+    void writeRow(byte[] row) throws IOException {
+	int done = 0;
+	while (done < row.length) {
+	    if (!buffer.hasRemaining()) {
+		flush();
+	    }
+	    int n = Math.min(row.length - done, buffer.remaining());
+	    buffer.put(row, done, n);
+	    done = done + n;
+	}
+    }
+
+    /**
+     *  skip() leaves the next n bytes to be written later with writeAt().
+     */
+
+    void skip(long n) throws IOException {
+	flush();
+	position = position + n;
+    }
+
+    /**
+     *  writeAt() writes "row" at the given offset from the start of the cells,
+     *  without moving the position of writeRow().
+     */
+
+    void writeAt(long offset, byte[] row) throws IOException {
+	flush();
+	ByteBuffer b = ByteBuffer.wrap(row);
+	long at = OceanFile.HEADER + offset;
+	while (b.hasRemaining()) {
+	    at = at + channel.write(b, at);
+	}
+    }
+
+    private void flush() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining()) {
+	    position = position + channel.write(buffer, position);
+	}
+	buffer.clear();
+    }
+
+    /**
+     *  finish() writes any buffered rows and then the header.
+     */
+
+    void finish(OceanFile header) throws IOException {
+	flush();
+	header.writeHeader(channel);
+    }
+
+    public void close() throws IOException {
+	channel.close();
+    }
+}
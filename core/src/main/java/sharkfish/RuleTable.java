@@ -0,0 +1,183 @@
+/* RuleTable.java */
+
+package sharkfish;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  The RuleTable class holds the rules of the simulation compiled into a
+ *  lookup table.  A Rule says what becomes of a cell given its state and the
+ *  numbers of fish and sharks among its neighbors (up to eight of each; see
+ *  Neighborhood); compile() asks it once for every combination, so applying
+ *  the rules to a cell is one table lookup, and a different Rule gives a
+ *  rule variant without any change to the engines.  The events table lets
+ *  the engines add up births, predation and starvations from bits rather
+ *  than by branching; Ocean, which keeps immutable nodes copy-on-write,
+ *  still branches per cell to choose the next node and to store it only
+ *  where it differs.
+ *
+ *  States are numbered as by OceanNode.state(): 0 is empty, 1 is a fish, and
+ *  2 + h is a shark with hunger h.  The table covers states 0 through
+ *  starveTime + 3, the largest state any engine stores (see PackedRows.pack()),
+ *  and a rule's results are clamped to that range in the same way.
+ */
+
+public class RuleTable {
+
+    /**
+     *  Rule is a specification of the rules, applied to one cell.
+     */
+
+    public interface Rule {
+
+	/**
+	 *  next() returns the state of a cell one timestep later.
+	 *  @param state is the state of the cell.
+	 *  @param fish is the number of fish among the cell's neighbors, at
+	 *         most eight.
+	 *  @param sharks is the number of sharks among the cell's neighbors,
+	 *         at most eight.
+	 *  @param starveTime is the number of timesteps sharks survive without
+	 *         food.
+	 *  @return the next state, 0 or more.
+	 */
+
+	int next(int state, int fish, int sharks, int starveTime);
+    }
+
+    /**
+     *  The bits of events(), which describe the change from a state to the
+     *  state that follows it.
+     */
+
+    final static int FISH_AFTER = 1;
+    final static int SHARK_AFTER = 2;
+    final static int BIRTH = 4;
+    final static int PREDATION = 8;
+    final static int STARVATION = 16;
+    final static int CHANGED = 32;
+
+    /**
+     *  The largest starveTime a table can be compiled for, so that every
+     *  state fits in a char.
+     */
+
+    public final static int MAX_STARVE_TIME = Character.MAX_VALUE - 3;
+
+    private final static Map<Integer, RuleTable> STANDARD =
+	new ConcurrentHashMap<Integer, RuleTable>();
+
+    private final int starveTime;
+    final char[] next;
+    final byte[] events;
+
+    private RuleTable(int starveTime) {
+	this.starveTime = starveTime;
+	next = new char[(starveTime + 4) * 81];
+	events = new byte[(starveTime + 4) * 81];
+    }
+
+    /**
+     *  standard() returns the rules of README, as given by Ocean.transition().
+     *  The tables are shared, one per starveTime.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     */
+
+    public static RuleTable standard(int starveTime) {
+	return STANDARD.computeIfAbsent(starveTime,
+					st -> compile(Ocean::transition, st));
+    }
+
+    /**
+     *  compile() builds the table for "rule".
+     *  @param rule is the rule specification.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     */
+
+    public static RuleTable compile(Rule rule, int starveTime) {
+	if ((starveTime <= 0) || (starveTime > MAX_STARVE_TIME)) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	}
+	RuleTable table = new RuleTable(starveTime);
+	int last = starveTime + 3;
+	for (int state = 0; state <= last; state++) {
+	    for (int fish = 0; fish <= 8; fish++) {
+		// every pair, not just those eight neighbors allow: Ocean's wider
+		// neighborhoods present up to eight of each kind.
+		for (int sharks = 0; sharks <= 8; sharks++) {
+		    int after = rule.next(state, fish, sharks, starveTime);
+		    if (after < 0) {
+			System.out.println("Error: rule produced an invalid state");
+			System.exit(0);
+		    }
+		    after = Math.min(after, last);
+		    int k = index(state, fish, sharks);
+		    table.next[k] = (char) after;
+		    table.events[k] = (byte) events(state, after);
+		}
+	    }
+	}
+	return table;
+    }
+
+    // describes the change from state "before" to state "after" in the bits
+    // named above.
+    private static int events(int before, int after) {
+	int e = 0;
+	if (after == 1) {
+	    e = e | FISH_AFTER;
+	} else if (after >= 2) {
+	    e = e | SHARK_AFTER;
+	}
+	if (after != before) {
+	    e = e | CHANGED;
+	    if ((before == 0) || ((before == 1) && (after >= 2))) {
+		e = e | BIRTH;
+	    }
+	    if (before == 1) {
+		e = e | PREDATION;
+	    } else if ((before >= 2) && (after == 0)) {
+		e = e | STARVATION;
+	    }
+	}
+	return e;
+    }
+
+    /**
+     *  index() returns the position of a combination in the tables.
+     */
+
+    static int index(int state, int fish, int sharks) {
+	return (state * 9 + fish) * 9 + sharks;
+    }
+
+    /**
+     *  starveTime() returns the starveTime the table was compiled for.
+     */
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    /**
+     *  quiescent() returns true if an empty cell with no neighbors stays
+     *  empty, so that engines may skip regions with nothing in them.
+     */
+
+    public boolean quiescent() {
+	return next[index(0, 0, 0)] == 0;
+    }
+
+    /**
+     *  next() returns the state of a cell one timestep later.
+     *  @param state is the state of the cell, at most starveTime + 3.
+     *  @param fish is the number of fish among the cell's eight neighbors.
+     *  @param sharks is the number of sharks among the cell's eight neighbors.
+     */
+
+    public int next(int state, int fish, int sharks) {
+	return next[index(state, fish, sharks)];
+    }
+}
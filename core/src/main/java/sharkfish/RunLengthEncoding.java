@@ -1,5 +1,7 @@
 /* RunLengthEncoding.java */
 
+package sharkfish;
+
 /**
  *  The RunLengthEncoding class defines an object that run-length encodes an
  *  Ocean object. The first constructor creates a run-length encoding of an 
@@ -18,6 +20,9 @@ public class RunLengthEncoding {
     private int height;
     private int starveTime;
     private int RLELength;
+    private long generation = -1;
+    private int age;
+    private RLENode[] rows;
 
     /**
      *  RunLengthEncoding() (with three parameters) is a constructor that creates
@@ -100,6 +105,49 @@ public class RunLengthEncoding {
 	squish();
     }
     
+    /**
+     *  RunLengthEncoding() (with four parameters) is a constructor used within
+     *  the package that encodes an ocean given as the states of its cells,
+     *  numbered as by OceanNode.state() and listed row by row.  Unlike the
+     *  five-parameter constructor, it keeps the hunger of every shark.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     *  @param states holds the i * j cell states, cell (x, y) at y * i + x.
+     */
+
+    RunLengthEncoding(int i, int j, int starveTime, int[] states) {
+	size = i * j;
+	width = i;
+	height = j;
+	this.starveTime = starveTime;
+	RLENode marker = head;
+	int n = 0;
+	while (n < size) {
+	    int state = states[n];
+	    int run = 1;
+	    while ((n + run < size) && (states[n + run] == state)) {
+		run++;
+	    }
+	    RLENode v = new RLENode();
+	    if (state == 0) {
+		v.setEmpty(run);
+	    } else if (state == 1) {
+		v.setFish(run);
+	    } else {
+		v.setShark(run, state - 2);
+	    }
+	    v.prev = marker;
+	    marker.next = v;
+	    marker = v;
+	    RLELength++;
+	    n = n + run;
+	}
+	marker.next = tail;
+	tail.prev = marker;
+	check();
+    }
+
     /**
      *  squish() compresses a RLE so that there are no consecutive runs.
      */
@@ -176,11 +224,19 @@ public class RunLengthEncoding {
     /**
      *  toOcean() converts a run-length encoding of an ocean into an Ocean
      *  object.  You will need to implement the three-parameter addShark method
-     *  in the Ocean class for this method's use.
+     *  in the Ocean class for this method's use.  Each decoding is reported to
+     *  SimulationMetrics.
      *  @return the Ocean represented by a run-length encoding.
      */
 
     public Ocean toOcean() {
+	boolean measured = SimulationMetrics.enabled();
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
 	Ocean RLEOcean = new Ocean(width, height, starveTime);
 	OceanNode cur;
 	RLENode marker = head.next;
@@ -193,7 +249,7 @@ public class RunLengthEncoding {
 			RLEOcean.addFish(c,r);
 			break;
 		    case Ocean.SHARK:
-			RLEOcean.addShark(c, r, marker.hunger());
+			RLEOcean.addShark(c, r, marker.hunger() + age);
 			break;
 		    default: break;
 		    }
@@ -205,6 +261,10 @@ public class RunLengthEncoding {
 		}
 	    }
 	}
+	if (measured) {
+	    SimulationMetrics.recordDecode(System.nanoTime() - start,
+					   SimulationMetrics.allocatedBytes() - allocated);
+	}
 	return RLEOcean;
     }
 
@@ -216,42 +276,251 @@ public class RunLengthEncoding {
      *  RunLengthEncoding() (with one parameter) is a constructor that creates
      *  a run-length encoding of an input Ocean.  You will need to implement
      *  the sharkFeeding method in the Ocean class for this constructor's use.
+     *  Each encoding is reported to SimulationMetrics.
      *  @param sea is the ocean to encode.
      */
 
     public RunLengthEncoding(Ocean sea) {
+	EncodeEvent event = SimulationMetrics.beginEncode();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
+	encode(sea);
+	if (measured) {
+	    SimulationMetrics.recordEncode(event, width, height, RLELength,
+					   System.nanoTime() - start,
+					   SimulationMetrics.allocatedBytes() - allocated);
+	}
+    }
+
+    // replaces the runs with those of "sea", which are built one run at a
+    // time from a bulk read of its cells.
+    private void encode(Ocean sea) {
 	starveTime = sea.starveTime();
 	width = sea.width();
 	height = sea.height();
 	size = width * height;
+	generation = sea.generation();
+	age = 0;
+	rows = null;
+	RLELength = 0;
+	RunPointer = head;
 	RLENode marker = head;
-	for (int r = 0; r < height; r++) {
-	    for (int c = 0; c < width; c++) {
-		RLENode v = new RLENode();
-		switch (sea.cellContents(c, r)) {
-		case Ocean.EMPTY:
-		    v.setEmpty(1);
-		    break;
-		case Ocean.FISH:
-		    v.setFish(1);
-		    break;
-		case Ocean.SHARK:
-		    v.setShark(1, sea.sharkFeeding(c, r));
-		    break;
-		default: break;
-		}
-		v.prev = marker;
-		marker.next = v;
-		marker = v;
-		RLELength++;
+	// one bulk read, in the order the ocean stores its cells.
+	byte[] contents = new byte[size];
+	sea.cellContents(contents);
+	int n = 0;
+	while (n < size) {
+	    int tag = contents[n];
+	    int hunger = (tag == Ocean.SHARK) ? sea.sharkFeeding(n % width, n / width) : -100;
+	    int run = 1;
+	    while ((n + run < size) && (contents[n + run] == tag)
+		   && ((tag != Ocean.SHARK)
+		       || (sea.sharkFeeding((n + run) % width, (n + run) / width) == hunger))) {
+		run++;
 	    }
+	    RLENode v = new RLENode(tag);
+	    v.setIters(run);
+	    v.setHunger(hunger);
+	    v.prev = marker;
+	    marker.next = v;
+	    marker = v;
+	    RLELength++;
+	    n = n + run;
 	}
 	marker.next = tail;
 	tail.prev = marker;
-	squish();
 	check();
     }
 
+    /**
+     *  update() makes this encoding, of one generation of an ocean, into an
+     *  encoding of "sea", the next generation, by patching only the runs
+     *  that hold the cells sea.changedCells() lists.  Every shark that did
+     *  not eat has grown one timestep hungrier, so the hungers are kept
+     *  relative to a count of updates and need no patching.  The cost grows
+     *  with the number of changed cells, not with the size of the ocean.
+     *
+     *  If this encoding was not made from or last updated to the generation
+     *  before sea, or sea has no list of changed cells (see
+     *  Ocean.recordChanges()), update() encodes sea from scratch instead.
+     *  Each update is reported to SimulationMetrics as an encoding.
+     *  @param sea is the ocean to encode; it must have been stepped from the
+     *         ocean this encoding describes.
+     */
+
+    public void update(Ocean sea) {
+	EncodeEvent event = SimulationMetrics.beginEncode();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
+	int[] changed = sea.changedCells();
+	if ((changed == null) || (generation < 0) || (sea.generation() != generation + 1)
+	    || (sea.width() != width) || (sea.height() != height)
+	    || (sea.starveTime() != starveTime)) {
+	    encode(sea);
+	} else {
+	    if (rows == null) {
+		index();
+	    }
+	    generation++;
+	    age++;
+	    RLENode near = null;
+	    for (int k = 0; k < changed.length; k++) {
+		int cell = changed[k];
+		int x = cell % width;
+		int y = cell / width;
+		int tag = sea.cellContents(x, y);
+		int hunger = (tag == Ocean.SHARK) ? sea.sharkFeeding(x, y) - age : -100;
+		near = patch(cell, tag, hunger, near);
+	    }
+	    event.incremental = true;
+	}
+	if (measured) {
+	    SimulationMetrics.recordEncode(event, width, height, RLELength,
+					   System.nanoTime() - start,
+					   SimulationMetrics.allocatedBytes() - allocated);
+	}
+    }
+
+    /*
+     *  While an encoding is being updated, every run knows its first cell
+     *  (RLENode.start), and rows[r] is the run holding the first cell of row
+     *  r, so a cell's run is found by walking along its own row.  Only the
+     *  runs around a patched cell change, and only the rows starting within
+     *  them are re-indexed.  The hunger stored in a shark run is its hunger
+     *  less "age", the number of updates so far.
+     */
+
+    // indexes the runs by row.
+    private void index() {
+	rows = new RLENode[height];
+	int first = 0;
+	for (RLENode marker = head.next; !marker.isTail(); marker = marker.next) {
+	    marker.start = first;
+	    int end = first + marker.iters();
+	    for (int r = (first + width - 1) / width; r * width < end; r++) {
+		rows[r] = marker;
+	    }
+	    first = end;
+	}
+    }
+
+    // stores a cell holding "tag" with stored hunger "hunger" at "cell",
+    // splitting and merging the runs around it, and returns the run that
+    // holds it.  The search starts from the row's first run, or from "near"
+    // if that is a run (returned by the last patch) between it and the cell.
+    private RLENode patch(int cell, int tag, int hunger, RLENode near) {
+	RLENode cur = rows[cell / width];
+	if ((near != null) && (near.start > cur.start) && (near.start <= cell)) {
+	    cur = near;
+	}
+	while (cur.start + cur.iters() <= cell) {
+	    cur = cur.next;
+	}
+	if ((cur.tag() == tag) && (cur.hunger() == hunger)) {
+	    return cur;
+	}
+	// the runs from "low" up to "high" are rebuilt.
+	int low = cur.start;
+	int high = cur.start + cur.iters();
+	RLENode var = cur;
+	if (cur.iters() > 1) {
+	    var = new RLENode(tag);
+	    var.start = cell;
+	}
+	var.setShark(1, hunger);
+	if (tag == Ocean.FISH) {
+	    var.setFish(1);
+	} else if (tag == Ocean.EMPTY) {
+	    var.setEmpty(1);
+	}
+	if (cur.iters() == 1) {
+	    // the cell was a run of its own, and var is that run.
+	} else if (cell == low) {
+	    cur.setIters(cur.iters() - 1);
+	    cur.start = cell + 1;
+	    link(cur.prev, var, cur);
+	} else if (cell == high - 1) {
+	    cur.setIters(cur.iters() - 1);
+	    link(cur, var, cur.next);
+	} else {
+	    RLENode right = new RLENode(cur.tag());
+	    right.setHunger(cur.hunger());
+	    right.setIters(high - cell - 1);
+	    right.start = cell + 1;
+	    cur.setIters(cell - low);
+	    link(cur, right, cur.next);
+	    link(cur, var, right);
+	}
+	RLENode before = var.prev;
+	if (!before.isHead() && (before.tag() == tag) && (before.hunger() == hunger)) {
+	    low = before.start;
+	    before.setIters(before.iters() + var.iters());
+	    unlink(var);
+	    var = before;
+	}
+	RLENode after = var.next;
+	if (!after.isTail() && (after.tag() == tag) && (after.hunger() == hunger)) {
+	    high = Math.max(high, after.start + after.iters());
+	    var.setIters(var.iters() + after.iters());
+	    unlink(after);
+	}
+	// re-index the rows that start in the rebuilt runs.
+	RLENode marker = var;
+	while (marker.start > low) {
+	    marker = marker.prev;
+	}
+	for (int r = (low + width - 1) / width; (r < height) && (r * width < high); r++) {
+	    while (marker.start + marker.iters() <= r * width) {
+		marker = marker.next;
+	    }
+	    rows[r] = marker;
+	}
+	return var;
+    }
+
+    // folds "age" into the stored hungers and drops the index, before the
+    // encoding is changed other than by update().
+    private void settle() {
+	if (age != 0) {
+	    for (RLENode marker = head.next; !marker.isTail(); marker = marker.next) {
+		if (marker.tag() == Ocean.SHARK) {
+		    marker.setHunger(marker.hunger() + age);
+		}
+	    }
+	    age = 0;
+	}
+	rows = null;
+	generation = -1;
+    }
+
+    // inserts "var" between the adjacent runs "before" and "after".
+    private void link(RLENode before, RLENode var, RLENode after) {
+	var.prev = before;
+	var.next = after;
+	before.next = var;
+	after.prev = var;
+	RLELength++;
+    }
+
+    // removes "var" from the list.
+    private void unlink(RLENode var) {
+	var.prev.next = var.next;
+	var.next.prev = var.prev;
+	var.next = null;
+	var.prev = null;
+	RLELength--;
+    }
+
     /**
      *  The following methods are required for Part IV.
      */
@@ -266,6 +535,7 @@ public class RunLengthEncoding {
      */
 
     public void addFish(int x, int y) {
+	settle();
 	int xcoor = Ocean.wrap(x, width);
 	int ycoor = Ocean.wrap(y, height);
 	int loc = xcoor + (ycoor * height) + 1;
@@ -328,6 +598,7 @@ public class RunLengthEncoding {
      */
 
     public void addShark(int x, int y) {
+	settle();
 	int xcoor = Ocean.wrap(x, width);
 	int ycoor = Ocean.wrap(y, height);
 	int loc = xcoor + (ycoor * height) + 1;
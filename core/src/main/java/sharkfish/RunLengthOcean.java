@@ -0,0 +1,339 @@
+/* RunLengthOcean.java */
+
+package sharkfish;
+
+import java.util.Arrays;
+
+/**
+ *  The RunLengthOcean class models the same ocean as Ocean but stores it as
+ *  runs of identical cells, in row-major order, as RunLengthEncoding does.
+ *  Unlike RunLengthEncoding it can step itself, and it keeps each shark's
+ *  hunger in the state of its run.  Its memory grows with the number of runs
+ *  rather than the area, which makes it the cheapest backend for an ocean of
+ *  large uniform regions.
+ *
+ *  Run r holds state runState[r] (0 for empty, 1 for a fish, 2 + h for a
+ *  shark with hunger h) and ends just before cell runEnd[r].  timeStep()
+ *  expands one row at a time into a three-row window, steps it with
+ *  PackedRows, and appends the result as runs; a row whose window is empty
+ *  becomes a single empty run without being stepped, when the rules are
+ *  quiescent.  Since rows are stepped in the packed cell format, starveTime
+ *  is limited to OffHeapOcean.MAX_STARVE_TIME.
+ */
+
+public class RunLengthOcean implements OceanBackend {
+
+    private final int width;
+    private final int height;
+    private final int starveTime;
+    private final RuleTable rules;
+    private char[] runState;
+    private long[] runEnd;
+    private int runCount;
+    private long generation;
+    private long hash;
+    private long fishCount;
+    private long sharkCount;
+    private long births;
+    private long predation;
+    private long starvations;
+
+    /**
+     *  RunLengthOcean() is a constructor that creates an empty ocean having
+     *  width i and height j, in which sharks starve after starveTime
+     *  timesteps.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     */
+
+    public RunLengthOcean(int i, int j, int starveTime) {
+	this(i, j, RuleTable.standard(starveTime));
+    }
+
+    /**
+     *  RunLengthOcean() (with a rule table) is a constructor that creates an
+     *  empty ocean having width i and height j that evolves by "rules".
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param rules is the compiled rule table.
+     */
+
+    public RunLengthOcean(int i, int j, RuleTable rules) {
+	if ((i <= 0) || (j <= 0)) {
+	    System.out.println("Error: invalid dimensions");
+	    System.exit(0);
+	} if (rules.starveTime() > OffHeapOcean.MAX_STARVE_TIME) {
+	    System.out.println("Error: invalid starve time");
+	    System.exit(0);
+	}
+	width = i;
+	height = j;
+	starveTime = rules.starveTime();
+	this.rules = rules;
+	runState = new char[16];
+	runEnd = new long[16];
+	append(0, (long) i * j);
+    }
+
+    /**
+     *  copyOf() copies any ocean backend into a new RunLengthOcean that
+     *  evolves by "rules", keeping its generation and the hunger of every
+     *  shark.
+     *  @param sea is the ocean to copy.
+     *  @param rules is the compiled rule table, for sea.starveTime().
+     *  @return the copy.
+     */
+
+    public static RunLengthOcean copyOf(OceanBackend sea, RuleTable rules) {
+	RunLengthOcean copy = new RunLengthOcean(sea.width(), sea.height(), rules);
+	copy.runCount = 0;
+	for (int y = 0; y < copy.height; y++) {
+	    long base = (long) y * copy.width;
+	    for (int x = 0; x < copy.width; x++) {
+		int contents = sea.cellContents(x, y);
+		int state = 0;
+		if (contents == Ocean.FISH) {
+		    state = 1;
+		    copy.fishCount++;
+		} else if (contents == Ocean.SHARK) {
+		    state = PackedRows.pack(2 + Math.max(sea.sharkFeeding(x, y), 0),
+					    copy.starveTime);
+		    copy.sharkCount++;
+		}
+		copy.append(state, 1);
+		copy.hash = copy.hash ^ Zobrist.key(base + x, state);
+	    }
+	}
+	copy.generation = sea.generation();
+	return copy;
+    }
+
+    public int width() {
+	return width;
+    }
+
+    public int height() {
+	return height;
+    }
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    /**
+     *  rules() returns the rule table the ocean evolves by.
+     */
+
+    public RuleTable rules() {
+	return rules;
+    }
+
+    /**
+     *  runs() returns the number of runs.
+     */
+
+    public int runs() {
+	return runCount;
+    }
+
+    public long generation() {
+	return generation;
+    }
+
+    public long stateHash() {
+	return hash;
+    }
+
+    public long fishCount() {
+	return fishCount;
+    }
+
+    public long sharkCount() {
+	return sharkCount;
+    }
+
+    public long births() {
+	return births;
+    }
+
+    public long predation() {
+	return predation;
+    }
+
+    public long starvations() {
+	return starvations;
+    }
+
+    // appends "length" cells of "state", merging with the last run if it
+    // has the same state.
+    private void append(int state, long length) {
+	if ((runCount > 0) && (runState[runCount - 1] == state)) {
+	    runEnd[runCount - 1] = runEnd[runCount - 1] + length;
+	    return;
+	}
+	if (runCount == runState.length) {
+	    runState = Arrays.copyOf(runState, 2 * runCount);
+	    runEnd = Arrays.copyOf(runEnd, 2 * runCount);
+	}
+	runState[runCount] = (char) state;
+	runEnd[runCount] = ((runCount == 0) ? 0 : runEnd[runCount - 1]) + length;
+	runCount++;
+    }
+
+    // returns the run that holds cell index "cell".
+    private int find(long cell) {
+	int lo = 0;
+	int hi = runCount - 1;
+	while (lo < hi) {
+	    int mid = (lo + hi) >>> 1;
+	    if (runEnd[mid] > cell) {
+		hi = mid;
+	    } else {
+		lo = mid + 1;
+	    }
+	}
+	return lo;
+    }
+
+    // returns the state of cell (x, y), wrapping around.
+    private int state(int x, int y) {
+	return runState[find((long) Ocean.wrap(y, height) * width + Ocean.wrap(x, width))];
+    }
+
+    /**
+     *  cellContents() returns EMPTY, FISH or SHARK, like Ocean.cellContents().
+     */
+
+    public int cellContents(int x, int y) {
+	int state = state(x, y);
+	if (state == 0) {
+	    return Ocean.EMPTY;
+	}
+	return (state == 1) ? Ocean.FISH : Ocean.SHARK;
+    }
+
+    /**
+     *  sharkFeeding() returns the hunger of the shark in cell (x, y), like
+     *  Ocean.sharkFeeding().
+     */
+
+    public int sharkFeeding(int x, int y) {
+	int state = state(x, y);
+	if (state < 2) {
+	    System.out.println("Error: hunger value not found");
+	    System.exit(0);
+	}
+	return state - 2;
+    }
+
+    // fills "row" with row y; returns true if the row is empty.
+    private boolean expand(int y, byte[] row) {
+	long base = (long) y * width;
+	int r = find(base);
+	int x = 0;
+	boolean empty = true;
+	while (x < width) {
+	    int state = runState[r];
+	    int stop = (int) Math.min(runEnd[r] - base, width);
+	    Arrays.fill(row, x, stop, (byte) state);
+	    empty = empty && (state == 0);
+	    x = stop;
+	    r++;
+	}
+	return empty;
+    }
+
+    /**
+     *  timeStep() returns a new ocean one timestep later, following the same
+     *  rules as Ocean.timeStep(); this ocean is left unchanged.
+     *  @return an ocean representing the elapse of one timestep.
+     */
+
+    public RunLengthOcean timeStep() {
+	StepEvent event = SimulationMetrics.beginStep();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
+	RunLengthOcean next = new RunLengthOcean(width, height, rules);
+	next.runCount = 0;
+	next.generation = generation + 1;
+	PackedRows kernel = new PackedRows(width, rules);
+	boolean quiescent = rules.quiescent();
+	long[] t = new long[PackedRows.TALLIES];
+	byte[] above = new byte[width];
+	byte[] row = new byte[width];
+	byte[] below = new byte[width];
+	byte[] out = new byte[width];
+	boolean aboveEmpty = expand(height - 1, above);
+	boolean rowEmpty = expand(0, row);
+	for (int y = 0; y < height; y++) {
+	    boolean belowEmpty = expand((y + 1) % height, below);
+	    if (quiescent && aboveEmpty && rowEmpty && belowEmpty) {
+		next.append(0, width);
+	    } else {
+		kernel.stepRow(above, row, below, out, (long) y * width, t);
+		int x = 0;
+		while (x < width) {
+		    int state = out[x];
+		    int end = x + 1;
+		    while ((end < width) && (out[end] == state)) {
+			end++;
+		    }
+		    next.append(Byte.toUnsignedInt((byte) state), end - x);
+		    x = end;
+		}
+	    }
+	    byte[] swap = above;
+	    above = row;
+	    row = below;
+	    below = swap;
+	    aboveEmpty = rowEmpty;
+	    rowEmpty = belowEmpty;
+	}
+	next.hash = hash ^ t[PackedRows.HASH];
+	next.fishCount = t[PackedRows.FISH];
+	next.sharkCount = t[PackedRows.SHARKS];
+	next.births = t[PackedRows.BIRTHS];
+	next.predation = t[PackedRows.PREDATION];
+	next.starvations = t[PackedRows.STARVATIONS];
+	if (measured) {
+	    SimulationMetrics.recordStep(event, next.generation, width, height,
+					 next.births, next.predation + next.starvations,
+					 next.starvations, System.nanoTime() - start,
+					 SimulationMetrics.allocatedBytes() - allocated);
+	}
+	return next;
+    }
+
+    /**
+     *  toOcean() copies the ocean into an Ocean, run by run.
+     */
+
+    public Ocean toOcean() {
+	Ocean sea = new Ocean(width, height, rules);
+	long cell = 0;
+	for (int r = 0; r < runCount; r++) {
+	    int state = runState[r];
+	    if (state == 0) {
+		cell = runEnd[r];
+		continue;
+	    }
+	    for (; cell < runEnd[r]; cell++) {
+		int x = (int) (cell % width);
+		int y = (int) (cell / width);
+		if (state == 1) {
+		    sea.addFish(x, y);
+		} else {
+		    sea.addShark(x, y, state - 2);
+		}
+	    }
+	}
+	sea.setGeneration(generation);
+	return sea;
+    }
+}
@@ -0,0 +1,499 @@
+/* SessionManager.java */
+
+package sharkfish;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ *  The SessionManager class runs many independent simulations, or sessions,
+ *  in one JVM on a fixed number of carrier threads.  A session is an Ocean
+ *  with a step budget (the number of timesteps it may still take) and a rate
+ *  limit (the most timesteps it may take per second); opening one starts it
+ *  stepping in the background, and snapshot() reads its latest generation.
+ *
+ *  Sessions are not threads.  Each is a small object holding its ocean and,
+ *  while a timestep is under way, an Ocean.Step, which can be resumed a few
+ *  tiles at a time.  The carriers share a run queue of sessions ready to
+ *  step and take turns in order: a carrier takes the session at the head,
+ *  advances its timestep by one quantum of about "quantum" cells, and puts
+ *  it back at the tail if the step is unfinished.  So a large ocean takes
+ *  many turns per timestep and cannot hold a carrier while small oceans
+ *  wait.  A session that has used its rate for now waits in a queue ordered
+ *  by the time it may step next.
+ *
+ *  A session that will not step for at least "idle" nanoseconds (paused,
+ *  out of budget, or rate limited that far ahead) is paged out: its ocean is
+ *  replaced by a RunLengthEncoding snapshot, which is decoded again when the
+ *  session next steps or is read.  Oceans in the Z_ORDER layout stay in
+ *  memory, since a decoded ocean is row-major.
+ *
+ *  This is the scheduling virtual threads would give, made explicit: the
+ *  build targets Java 17, and a per-session thread would not bound the work
+ *  a session does before another gets a turn.
+ */
+
+public class SessionManager implements Closeable {
+
+    /**
+     *  The default number of cells stepped per turn.
+     */
+
+    public final static int QUANTUM = 1 << 16;
+
+    /**
+     *  The default time, in nanoseconds, a session must be idle for to be
+     *  paged out.
+     */
+
+    public final static long IDLE = 5000000000L;
+
+    /**
+     *  Session is one simulation run by a SessionManager.  Its methods may be
+     *  called from any thread.
+     */
+
+    public final class Session {
+	private final long id;
+	private final long interval;
+	private Ocean sea;
+	private RunLengthEncoding paged;
+	private long pagedGeneration;
+	private RuleTable rules;
+	private Neighborhood neighborhood;
+	private boolean areaTables;
+	private Ocean.Step step;
+	private long budget;
+	private long steps;
+	private long readyAt;
+	private boolean paused;
+	private boolean closed;
+	private boolean queued;
+	private boolean running;
+
+	private Session(long id, Ocean sea, double stepsPerSecond, long budget) {
+	    this.id = id;
+	    this.sea = sea;
+	    this.budget = budget;
+	    interval = (stepsPerSecond > 0) ? (long) (1e9 / stepsPerSecond) : 0;
+	}
+
+	/**
+	 *  id() returns the session's number, unique within its manager.
+	 */
+
+	public long id() {
+	    return id;
+	}
+
+	/**
+	 *  steps() returns the number of timesteps the session has taken.
+	 */
+
+	public synchronized long steps() {
+	    return steps;
+	}
+
+	/**
+	 *  generation() returns the generation of the session's ocean.
+	 */
+
+	public synchronized long generation() {
+	    return (sea == null) ? pagedGeneration : sea.generation();
+	}
+
+	/**
+	 *  isPagedOut() returns true if the ocean is held as a snapshot.
+	 */
+
+	public synchronized boolean isPagedOut() {
+	    return sea == null;
+	}
+
+	/**
+	 *  snapshot() returns the session's latest generation, paging it in if
+	 *  needed.  Oceans are not modified by stepping (see Ocean), so the
+	 *  result may be read while the session goes on.
+	 */
+
+	public synchronized Ocean snapshot() {
+	    pageIn();
+	    return sea;
+	}
+
+	/**
+	 *  addBudget() allows the session "more" further timesteps, and
+	 *  restarts it if it had run out.  A negative budget is unlimited.
+	 *  @param more is the number of timesteps to add.
+	 */
+
+	public void addBudget(long more) {
+	    synchronized (this) {
+		if (budget >= 0) {
+		    budget = budget + more;
+		}
+	    }
+	    wake(this);
+	}
+
+	/**
+	 *  pause() stops the session after the timestep under way.
+	 */
+
+	public synchronized void pause() {
+	    paused = true;
+	}
+
+	/**
+	 *  resume() restarts a paused session.
+	 */
+
+	public void resume() {
+	    synchronized (this) {
+		paused = false;
+	    }
+	    wake(this);
+	}
+
+	/**
+	 *  close() ends the session and releases its ocean.
+	 */
+
+	public void close() {
+	    synchronized (this) {
+		closed = true;
+		sea = null;
+		paged = null;
+		step = null;
+	    }
+	    remove(this);
+	}
+
+	// returns true if the session may take a timestep, setting aside its
+	// rate limit.
+	private synchronized boolean active() {
+	    return !closed && !paused && (budget != 0);
+	}
+
+	// advances the session by one quantum; returns true if the timestep is
+	// still under way.
+	private synchronized boolean runQuantum(int cells) {
+	    if (closed) {
+		return false;
+	    }
+	    pageIn();
+	    if (step == null) {
+		step = sea.beginStep();
+		readyAt = System.nanoTime() + interval;
+	    }
+	    if (!step.advance(cells)) {
+		return true;
+	    }
+	    sea = step.finish();
+	    step = null;
+	    steps++;
+	    if (budget > 0) {
+		budget--;
+	    }
+	    return false;
+	}
+
+	// replaces the ocean with a run-length snapshot.
+	private synchronized void pageOut() {
+	    if ((sea == null) || (step != null) || running
+		|| (sea.layout() != Ocean.Layout.ROW_MAJOR)) {
+		return;
+	    }
+	    rules = sea.rules();
+	    neighborhood = sea.neighborhood();
+	    areaTables = sea.buildsAreaTables();
+	    pagedGeneration = sea.generation();
+	    paged = new RunLengthEncoding(sea);
+	    sea = null;
+	}
+
+	// decodes the run-length snapshot, if the ocean is paged out.
+	private void pageIn() {
+	    if ((sea != null) || (paged == null)) {
+		return;
+	    }
+	    Ocean decoded = paged.toOcean();
+	    decoded.setRules(rules);
+	    decoded.setNeighborhood(neighborhood);
+	    decoded.buildAreaTables(areaTables);
+	    decoded.setGeneration(pagedGeneration);
+	    sea = decoded;
+	    paged = null;
+	}
+    }
+
+    private final int quantum;
+    private final long idle;
+    private final Thread[] carriers;
+    private final ArrayDeque<Session> ready = new ArrayDeque<Session>();
+    private final PriorityQueue<Session> waiting =
+	new PriorityQueue<Session>((a, b) -> Long.compare(a.readyAt, b.readyAt));
+    private final ArrayList<Session> sessions = new ArrayList<Session>();
+    private long nextId;
+    private boolean open = true;
+
+    /**
+     *  SessionManager() creates a manager with "carriers" carrier threads and
+     *  the default quantum and idle time.
+     *  @param carriers is the number of carrier threads.
+     */
+
+    public SessionManager(int carriers) {
+	this(carriers, QUANTUM, IDLE);
+    }
+
+    /**
+     *  SessionManager() creates a manager with "carriers" carrier threads.
+     *  @param carriers is the number of carrier threads.
+     *  @param quantum is the number of cells a session steps per turn.
+     *  @param idle is the time, in nanoseconds, a session must be idle for
+     *         to be paged out.
+     */
+
+    public SessionManager(int carriers, int quantum, long idle) {
+	if ((carriers <= 0) || (quantum <= 0) || (idle < 0)) {
+	    System.out.println("Error: invalid session manager parameters");
+	    System.exit(0);
+	}
+	this.quantum = quantum;
+	this.idle = idle;
+	this.carriers = new Thread[carriers];
+	for (int c = 0; c < carriers; c++) {
+	    Thread carrier = new Thread(this::carry, "sharkfish-session-" + c);
+	    carrier.setDaemon(true);
+	    this.carriers[c] = carrier;
+	    carrier.start();
+	}
+    }
+
+    /**
+     *  open() starts a session stepping "sea".
+     *  @param sea is the session's starting ocean.
+     *  @param stepsPerSecond is the most timesteps per second the session
+     *         may take, or 0 for no limit.
+     *  @param budget is the number of timesteps the session may take, or -1
+     *         for no limit.
+     *  @return the session.
+     */
+
+    public Session open(Ocean sea, double stepsPerSecond, long budget) {
+	Session session;
+	synchronized (this) {
+	    if (!open) {
+		System.out.println("Error: the session manager is closed");
+		System.exit(0);
+	    }
+	    session = new Session(nextId++, sea, stepsPerSecond, budget);
+	    sessions.add(session);
+	}
+	wake(session);
+	return session;
+    }
+
+    /**
+     *  sessions() returns the number of open sessions.
+     */
+
+    public synchronized int sessions() {
+	return sessions.size();
+    }
+
+    /**
+     *  pagedOut() returns the number of sessions whose oceans are paged out.
+     */
+
+    public int pagedOut() {
+	Session[] all;
+	synchronized (this) {
+	    all = sessions.toArray(new Session[0]);
+	}
+	int count = 0;
+	for (Session session : all) {
+	    count = count + (session.isPagedOut() ? 1 : 0);
+	}
+	return count;
+    }
+
+    /**
+     *  close() stops the carriers; the sessions' latest generations can
+     *  still be read.
+     */
+
+    public void close() {
+	synchronized (this) {
+	    open = false;
+	    notifyAll();
+	}
+	for (Thread carrier : carriers) {
+	    try {
+		carrier.join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	    }
+	}
+    }
+
+    // queues "session" to step if it may and is not already queued.
+    private synchronized void wake(Session session) {
+	if (!session.queued && !session.running && session.active()) {
+	    session.queued = true;
+	    if (session.readyAt <= System.nanoTime()) {
+		ready.addLast(session);
+	    } else {
+		waiting.add(session);
+	    }
+	    notifyAll();
+	}
+    }
+
+    // forgets a closed session.
+    private synchronized void remove(Session session) {
+	sessions.remove(session);
+	ready.remove(session);
+	waiting.remove(session);
+    }
+
+    // the loop of each carrier thread.
+    private void carry() {
+	while (true) {
+	    Session session = take();
+	    if (session == null) {
+		return;
+	    }
+	    boolean unfinished = session.runQuantum(quantum);
+	    Session pageOut = null;
+	    synchronized (this) {
+		session.running = false;
+		if (unfinished) {
+		    session.queued = true;
+		    ready.addLast(session);
+		} else if (session.active()) {
+		    session.queued = true;
+		    if (session.readyAt <= System.nanoTime()) {
+			ready.addLast(session);
+		    } else {
+			waiting.add(session);
+			if (session.readyAt - System.nanoTime() >= idle) {
+			    pageOut = session;
+			}
+		    }
+		} else if (idle == 0) {
+		    pageOut = session;
+		}
+		notifyAll();
+	    }
+	    if (pageOut != null) {
+		pageOut.pageOut();
+	    }
+	    if (idle > 0) {
+		sweep();
+	    }
+	}
+    }
+
+    // returns the next session to step, waiting for one, or null once the
+    // manager is closed.  It waits at most "idle" at a time and sweeps
+    // between waits, so sessions are paged out even when nothing steps.
+    private Session take() {
+	while (true) {
+	    synchronized (this) {
+		if (!open) {
+		    return null;
+		}
+		long now = System.nanoTime();
+		while (!waiting.isEmpty() && (waiting.peek().readyAt <= now)) {
+		    ready.addLast(waiting.poll());
+		}
+		Session session = ready.pollFirst();
+		if (session != null) {
+		    session.queued = false;
+		    session.running = true;
+		    return session;
+		}
+		long wait = waiting.isEmpty() ? 1000000000L : waiting.peek().readyAt - now;
+		if (idle > 0) {
+		    wait = Math.min(wait, idle);
+		}
+		try {
+		    wait(Math.max(1, wait / 1000000), 0);
+		} catch (InterruptedException e) {
+		    return null;
+		}
+	    }
+	    if (idle > 0) {
+		sweep();
+	    }
+	}
+    }
+
+    private long lastSweep;
+
+    // pages out the sessions that have stopped stepping for at least "idle"
+    // nanoseconds; runs at most once per idle period.
+    private void sweep() {
+	ArrayList<Session> stopped = new ArrayList<Session>();
+	synchronized (this) {
+	    long now = System.nanoTime();
+	    if (now - lastSweep < idle) {
+		return;
+	    }
+	    lastSweep = now;
+	    for (Session session : sessions) {
+		if (!session.queued && !session.running && (now - session.readyAt >= idle)) {
+		    stopped.add(session);
+		}
+	    }
+	}
+	for (Session session : stopped) {
+	    if (!session.active()) {
+		session.pageOut();
+	    }
+	}
+    }
+
+    /**
+     *  main() runs a number of randomly seeded sessions for a while and
+     *  reports how far each got.  The parameters are the number of
+     *  sessions, the width and height of each ocean, the number of carrier
+     *  threads, and the number of seconds to run.
+     */
+
+    public static void main(String[] argv) throws InterruptedException {
+	if (argv.length < 5) {
+	    System.out.println("Usage: java sharkfish.SessionManager sessions width"
+			       + " height carriers seconds");
+	    System.exit(0);
+	}
+	int count = Integer.parseInt(argv[0]);
+	int i = Integer.parseInt(argv[1]);
+	int j = Integer.parseInt(argv[2]);
+	int carriers = Integer.parseInt(argv[3]);
+	int seconds = Integer.parseInt(argv[4]);
+	SessionManager manager = new SessionManager(carriers);
+	Session[] all = new Session[count];
+	for (int s = 0; s < count; s++) {
+	    all[s] = manager.open(Ocean.seeded(i, j, 3, 0.5, 0.15, s), 0, -1);
+	}
+	Thread.sleep(seconds * 1000L);
+	manager.close();
+	long min = Long.MAX_VALUE;
+	long max = 0;
+	long total = 0;
+	for (Session session : all) {
+	    long steps = session.steps();
+	    min = Math.min(min, steps);
+	    max = Math.max(max, steps);
+	    total = total + steps;
+	}
+	System.out.println(count + " sessions, " + total + " timesteps in " + seconds
+			   + " s; fewest " + min + ", most " + max);
+    }
+}
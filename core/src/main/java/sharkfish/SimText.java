@@ -1,5 +1,7 @@
 /* SimText.java */
 
+package sharkfish;
+
 import java.util.*;
 
 /**
@@ -38,6 +40,8 @@ public class SimText {
     if (sea != null) {
       int width = sea.width();
       int height = sea.height();
+      byte[] contents = new byte[width * height];
+      sea.cellContents(contents);
 
       /* Draw the ocean. */
       for (int x = 0; x < width + 2; x++) {
@@ -47,10 +51,10 @@ public class SimText {
       for (int y = 0; y < height; y++) {
         System.out.print("|");
         for (int x = 0; x < width; x++) {
-          int contents = sea.cellContents(x, y);
-          if (contents == Ocean.SHARK) {
+          int cell = contents[y * width + x];
+          if (cell == Ocean.SHARK) {
             System.out.print('S');
-          } else if (contents == Ocean.FISH) {
+          } else if (cell == Ocean.FISH) {
             System.out.print('~');
           } else {
             System.out.print(' ');
@@ -1,6 +1,9 @@
 /* Simulation.java */
 
+package sharkfish;
+
 import java.awt.*;
+import java.awt.event.*;
 import java.util.*;
 
 /**
@@ -38,25 +41,16 @@ public class Simulation {
   private static int j = 80;                            // Default ocean height
   private static int starveTime = 3;           // Default shark starvation time
 
+  /**
+   *  The view of the ocean in the window.  An ocean too large for the screen
+   *  is shown downsampled; "+" and "-" zoom and the arrow keys pan.
+   */
+
+  private static OceanView view;
+
   private static void drawOcean(Graphics graphics, Ocean ocean) {
     if (ocean != null) {
-      int width = ocean.width();
-      int height = ocean.height();
-
-      for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          int contents = ocean.cellContents(x, y);
-          if (contents == Ocean.SHARK) {
-            graphics.setColor(Color.red);                   // Draw a red shark
-            graphics.fillRect(x * cellSize, y * cellSize, cellSize, cellSize);
-          } else if (contents == Ocean.FISH) {
-            graphics.setColor(Color.green);                // Draw a green fish
-            graphics.fillRect(x * cellSize, y * cellSize, cellSize, cellSize);
-          } else {
-            graphics.clearRect(x * cellSize, y * cellSize, cellSize, cellSize);
-          }
-        }
-      }
+      graphics.drawImage(view.render(ocean), 0, 0, null);
     }
   }
 
@@ -102,11 +96,17 @@ public class Simulation {
      *  Create a window on your screen.
      */
 
+    Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+    int pixelsWide = Math.min(i * cellSize, screen.width - 10);
+    int pixelsHigh = Math.min(j * cellSize, screen.height - 30);
+    view = new OceanView(pixelsWide, pixelsHigh);
+    view.fit(i, j);
+
     Frame frame = new Frame("Sharks and Fish");
     //  The "10" and "30" in the following line were determined by trial and
     //  error, and seem to be necessary for the lab machines.  On some other
     //  machines, they just create ugly margins.  Sigh.
-    frame.setSize(i * cellSize + 10, j * cellSize + 30);
+    frame.setSize(pixelsWide + 10, pixelsHigh + 30);
     frame.show();
 
     /**
@@ -115,7 +115,22 @@ public class Simulation {
 
     Canvas canvas = new Canvas();
     canvas.setBackground(Color.white);
-    canvas.setSize(i * cellSize, j * cellSize);
+    canvas.setSize(pixelsWide, pixelsHigh);
+    canvas.addKeyListener(new KeyAdapter() {
+      public void keyPressed(KeyEvent e) {           // Takes effect next step
+        int dx = (int) Math.max(1, view.cellsWide() / 4);
+        int dy = (int) Math.max(1, view.cellsHigh() / 4);
+        switch (e.getKeyCode()) {
+        case KeyEvent.VK_LEFT:  view.pan(-dx, 0); break;
+        case KeyEvent.VK_RIGHT: view.pan(dx, 0);  break;
+        case KeyEvent.VK_UP:    view.pan(0, -dy); break;
+        case KeyEvent.VK_DOWN:  view.pan(0, dy);  break;
+        case KeyEvent.VK_MINUS: view.zoom(1);     break;
+        case KeyEvent.VK_EQUALS:
+        case KeyEvent.VK_PLUS:  view.zoom(-1);    break;
+        }
+      }
+    });
     frame.add(canvas);
     Graphics graphics = canvas.getGraphics();
 
@@ -0,0 +1,396 @@
+/* SimulationMetrics.java */
+
+package sharkfish;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.EventType;
+
+/**
+ *  SimulationMetrics collects runtime figures from Ocean.timeStep(),
+ *  RunLengthEncoding(Ocean) and RunLengthEncoding.toOcean(), and exposes them
+ *  through JMX as "sharkfish:type=SimulationMetrics".  It also commits the
+ *  StepEvent and EncodeEvent JFR events whenever a recording enables them.
+ *
+ *  Collection is off by default.  Start the JVM with -Dsharkfish.metrics=true
+ *  or call enable() to turn it on.  While it is off and no JFR recording wants
+ *  the events, the instrumented paths create no event and skip the clock and
+ *  allocation counter reads entirely; all that remains is a volatile read
+ *  and a check of the event type per step or encode.
+ */
+
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    public final static String OBJECT_NAME = "sharkfish:type=SimulationMetrics";
+
+    private final static SimulationMetrics INSTANCE = new SimulationMetrics();
+    private final static com.sun.management.ThreadMXBean THREADS = threads();
+    private final static EventType STEP_EVENT = EventType.getEventType(StepEvent.class);
+    private final static EventType ENCODE_EVENT = EventType.getEventType(EncodeEvent.class);
+
+    private static volatile boolean enabled;
+    private static boolean registered;
+
+    private final LatencyHistogram stepLatency = new LatencyHistogram();
+    private long generation;
+    private long lastStepNanos;
+    private long lastStepCells;
+    private long totalCells;
+    private long lastBirths;
+    private long lastDeaths;
+    private long lastStarvations;
+    private long totalBirths;
+    private long totalDeaths;
+    private long totalStarvations;
+    private long lastStepAllocated;
+    private long encodes;
+    private long lastEncodeNanos;
+    private long lastEncodeAllocated;
+    private long decodes;
+    private long lastDecodeNanos;
+    private long lastDecodeAllocated;
+
+    static {
+	if (Boolean.getBoolean("sharkfish.metrics")) {
+	    enable();
+	}
+    }
+
+    private SimulationMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean) {
+	    com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+	    if (sun.isThreadAllocatedMemorySupported()
+		&& sun.isThreadAllocatedMemoryEnabled()) {
+		return sun;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     *  get() returns the process-wide SimulationMetrics.
+     */
+
+    public static SimulationMetrics get() {
+	return INSTANCE;
+    }
+
+    /**
+     *  enable() turns collection on and registers the MBean with the platform
+     *  MBean server, if it is not registered already.
+     */
+
+    public static synchronized void enable() {
+	if (!registered) {
+	    try {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		registered = true;
+	    } catch (JMException e) {
+		System.out.println("Error: cannot register " + OBJECT_NAME + ": " + e);
+	    }
+	}
+	enabled = true;
+    }
+
+    public static void disable() {
+	enabled = false;
+    }
+
+    /**
+     *  enabled() returns true if collection is on.  The instrumented paths
+     *  call it once per step or encode.
+     */
+
+    static boolean enabled() {
+	return enabled;
+    }
+
+    /**
+     *  beginStep() returns a begun StepEvent if collection is on or a JFR
+     *  recording wants the event, and null otherwise, so that an unmeasured
+     *  step allocates nothing for it.
+     */
+
+    static StepEvent beginStep() {
+	if (!enabled && !STEP_EVENT.isEnabled()) {
+	    return null;
+	}
+	StepEvent event = new StepEvent();
+	event.begin();
+	return event;
+    }
+
+    /**
+     *  beginEncode() is the same for an EncodeEvent.
+     */
+
+    static EncodeEvent beginEncode() {
+	if (!enabled && !ENCODE_EVENT.isEnabled()) {
+	    return null;
+	}
+	EncodeEvent event = new EncodeEvent();
+	event.begin();
+	return event;
+    }
+
+    /**
+     *  allocatedBytes() returns the number of bytes the current thread has
+     *  allocated so far, or zero if the JVM cannot tell.  It suits engines
+     *  that step on the calling thread.
+     */
+
+    static long allocatedBytes() {
+	return (THREADS == null) ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     *  allocatedBytesByAllThreads() returns the number of bytes every live
+     *  thread has allocated so far, or zero if the JVM cannot tell.  Engines
+     *  that step in parallel use it, so the fork-join workers are counted;
+     *  whatever other threads allocate meanwhile is counted too.
+     */
+
+    static long allocatedBytesByAllThreads() {
+	if (THREADS == null) {
+	    return 0;
+	}
+	long total = 0;
+	for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+	    total = total + Math.max(bytes, 0);
+	}
+	return total;
+    }
+
+    /**
+     *  recordStep() records one Ocean.timeStep().  It commits the JFR event if
+     *  a recording wants it and updates the MBean figures if collection is on.
+     */
+
+    static void recordStep(StepEvent event, long generation, int width,
+			   int height, long births, long deaths, long starvations,
+			   long nanos, long allocated) {
+	recordStep(event, generation, width, height, 1, births, deaths, starvations,
+		   nanos, allocated);
+    }
+
+    /**
+     *  recordStep() (with a member count) records one step of "members"
+     *  oceans of the same size at once, as Ensemble.timeStep() takes.
+     */
+
+    static void recordStep(StepEvent event, long generation, int width,
+			   int height, int members, long births, long deaths,
+			   long starvations, long nanos, long allocated) {
+	event.end();
+	if (event.shouldCommit()) {
+	    event.generation = generation;
+	    event.width = width;
+	    event.height = height;
+	    event.members = members;
+	    event.births = births;
+	    event.deaths = deaths;
+	    event.starvations = starvations;
+	    event.allocated = allocated;
+	    event.commit();
+	}
+	if (enabled) {
+	    INSTANCE.step(generation, (long) width * height * members, births, deaths,
+			  starvations, nanos, allocated);
+	}
+    }
+
+    /**
+     *  recordEncode() records one RunLengthEncoding(Ocean).
+     */
+
+    static void recordEncode(EncodeEvent event, int width, int height,
+			     int runs, long nanos, long allocated) {
+	event.end();
+	if (event.shouldCommit()) {
+	    event.width = width;
+	    event.height = height;
+	    event.runs = runs;
+	    event.allocated = allocated;
+	    event.commit();
+	}
+	if (enabled) {
+	    INSTANCE.encode(nanos, allocated);
+	}
+    }
+
+    /**
+     *  recordDecode() records one RunLengthEncoding.toOcean().
+     */
+
+    static void recordDecode(long nanos, long allocated) {
+	if (enabled) {
+	    INSTANCE.decode(nanos, allocated);
+	}
+    }
+
+    private synchronized void step(long generation, long cells, long births,
+				   long deaths, long starvations, long nanos,
+				   long allocated) {
+	this.generation = generation;
+	stepLatency.record(nanos);
+	lastStepNanos = nanos;
+	lastStepCells = cells;
+	totalCells = totalCells + cells;
+	lastBirths = births;
+	lastDeaths = deaths;
+	lastStarvations = starvations;
+	totalBirths = totalBirths + births;
+	totalDeaths = totalDeaths + deaths;
+	totalStarvations = totalStarvations + starvations;
+	lastStepAllocated = allocated;
+    }
+
+    private synchronized void encode(long nanos, long allocated) {
+	encodes++;
+	lastEncodeNanos = nanos;
+	lastEncodeAllocated = allocated;
+    }
+
+    private synchronized void decode(long nanos, long allocated) {
+	decodes++;
+	lastDecodeNanos = nanos;
+	lastDecodeAllocated = allocated;
+    }
+
+    private static double perSecond(long count, long nanos) {
+	return (nanos == 0) ? 0.0 : count * 1e9 / nanos;
+    }
+
+    public boolean isEnabled() {
+	return enabled;
+    }
+
+    public void setEnabled(boolean on) {
+	if (on) {
+	    enable();
+	} else {
+	    disable();
+	}
+    }
+
+    public synchronized long getGeneration() {
+	return generation;
+    }
+
+    public synchronized long getSteps() {
+	return stepLatency.total();
+    }
+
+    public synchronized long getLastStepNanos() {
+	return lastStepNanos;
+    }
+
+    public synchronized double getMeanStepNanos() {
+	long steps = stepLatency.total();
+	return (steps == 0) ? 0.0 : (double) stepLatency.sum() / steps;
+    }
+
+    public synchronized long getMaxStepNanos() {
+	return stepLatency.max();
+    }
+
+    public synchronized long getStepNanosP50() {
+	return stepLatency.percentile(50);
+    }
+
+    public synchronized long getStepNanosP99() {
+	return stepLatency.percentile(99);
+    }
+
+    public synchronized long[] getStepLatencyHistogram() {
+	return stepLatency.counts();
+    }
+
+    public synchronized double getLastCellsPerSecond() {
+	return perSecond(lastStepCells, lastStepNanos);
+    }
+
+    public synchronized double getTotalCellsPerSecond() {
+	return perSecond(totalCells, stepLatency.sum());
+    }
+
+    public synchronized long getLastBirths() {
+	return lastBirths;
+    }
+
+    public synchronized long getLastDeaths() {
+	return lastDeaths;
+    }
+
+    public synchronized long getLastStarvations() {
+	return lastStarvations;
+    }
+
+    public synchronized long getTotalBirths() {
+	return totalBirths;
+    }
+
+    public synchronized long getTotalDeaths() {
+	return totalDeaths;
+    }
+
+    public synchronized long getTotalStarvations() {
+	return totalStarvations;
+    }
+
+    public synchronized long getLastStepAllocatedBytes() {
+	return lastStepAllocated;
+    }
+
+    public synchronized long getEncodes() {
+	return encodes;
+    }
+
+    public synchronized long getLastEncodeNanos() {
+	return lastEncodeNanos;
+    }
+
+    public synchronized long getLastEncodeAllocatedBytes() {
+	return lastEncodeAllocated;
+    }
+
+    public synchronized long getDecodes() {
+	return decodes;
+    }
+
+    public synchronized long getLastDecodeNanos() {
+	return lastDecodeNanos;
+    }
+
+    public synchronized long getLastDecodeAllocatedBytes() {
+	return lastDecodeAllocated;
+    }
+
+    public synchronized void reset() {
+	stepLatency.reset();
+	generation = 0;
+	lastStepNanos = 0;
+	lastStepCells = 0;
+	totalCells = 0;
+	lastBirths = 0;
+	lastDeaths = 0;
+	lastStarvations = 0;
+	totalBirths = 0;
+	totalDeaths = 0;
+	totalStarvations = 0;
+	lastStepAllocated = 0;
+	encodes = 0;
+	lastEncodeNanos = 0;
+	lastEncodeAllocated = 0;
+	decodes = 0;
+	lastDecodeNanos = 0;
+	lastDecodeAllocated = 0;
+    }
+}
@@ -0,0 +1,70 @@
+/* SimulationMetricsMBean.java */
+
+package sharkfish;
+
+/**
+ *  SimulationMetricsMBean is the management interface of SimulationMetrics,
+ *  registered under the name "sharkfish:type=SimulationMetrics".  Step figures
+ *  describe the most recent Ocean.timeStep() unless they say "total"; encode
+ *  and decode figures describe RunLengthEncoding(Ocean) and toOcean().
+ */
+
+public interface SimulationMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getGeneration();
+
+    long getSteps();
+
+    long getLastStepNanos();
+
+    double getMeanStepNanos();
+
+    long getMaxStepNanos();
+
+    long getStepNanosP50();
+
+    long getStepNanosP99();
+
+    /**
+     *  getStepLatencyHistogram() returns the step latency counts in
+     *  power-of-two buckets; index k counts steps that took [2^k, 2^(k+1)) ns.
+     */
+
+    long[] getStepLatencyHistogram();
+
+    double getLastCellsPerSecond();
+
+    double getTotalCellsPerSecond();
+
+    long getLastBirths();
+
+    long getLastDeaths();
+
+    long getLastStarvations();
+
+    long getTotalBirths();
+
+    long getTotalDeaths();
+
+    long getTotalStarvations();
+
+    long getLastStepAllocatedBytes();
+
+    long getEncodes();
+
+    long getLastEncodeNanos();
+
+    long getLastEncodeAllocatedBytes();
+
+    long getDecodes();
+
+    long getLastDecodeNanos();
+
+    long getLastDecodeAllocatedBytes();
+
+    void reset();
+}
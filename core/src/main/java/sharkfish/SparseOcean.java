@@ -0,0 +1,403 @@
+/* SparseOcean.java */
+
+package sharkfish;
+
+/**
+ *  The SparseOcean class models the same ocean as Ocean but stores only the
+ *  occupied cells, in a hash table keyed by cell index y * width + x, so its
+ *  memory and the cost of timeStep() grow with the population rather than
+ *  with the area.  It is the cheapest backend for a nearly extinct ocean.
+ *
+ *  timeStep() visits each occupied cell once, adding it to the neighbor
+ *  counts of the eight cells around it; only cells that end up with a
+ *  neighbor or an occupant can change, provided the rules are quiescent (an
+ *  empty cell with no neighbors stays empty; see RuleTable.quiescent()).
+ *  Each of those cells is then stepped by a rule table lookup.
+ */
+
+public class SparseOcean implements OceanBackend {
+
+    /**
+     *  CellMap is an open-addressing hash table from cell indices to ints.
+     *  A key is stored as cell + 1, so that 0 marks a free slot.
+     */
+
+    private static final class CellMap {
+	long[] keys;
+	int[] values;
+	int size;
+	int shift;
+
+	CellMap(int expected) {
+	    int capacity = 16;
+	    while (capacity < 2 * expected) {
+		capacity = capacity * 2;
+	    }
+	    keys = new long[capacity];
+	    values = new int[capacity];
+	    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	// returns the slot holding "cell", or the free slot where it belongs.
+	int slot(long cell) {
+	    long key = cell + 1;
+	    int mask = keys.length - 1;
+	    int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	    while ((keys[i] != 0) && (keys[i] != key)) {
+		i = (i + 1) & mask;
+	    }
+	    return i;
+	}
+
+	int get(long cell) {
+	    int i = slot(cell);
+	    return (keys[i] == 0) ? 0 : values[i];
+	}
+
+	// adds "delta" to the value of "cell", which starts at zero.
+	void add(long cell, int delta) {
+	    int i = slot(cell);
+	    if (keys[i] == 0) {
+		if (2 * (size + 1) > keys.length) {
+		    grow();
+		    i = slot(cell);
+		}
+		keys[i] = cell + 1;
+		size++;
+	    }
+	    values[i] = values[i] + delta;
+	}
+
+	void put(long cell, int value) {
+	    add(cell, 0);
+	    values[slot(cell)] = value;
+	}
+
+	private void grow() {
+	    long[] oldKeys = keys;
+	    int[] oldValues = values;
+	    keys = new long[oldKeys.length * 2];
+	    values = new int[oldKeys.length * 2];
+	    shift--;
+	    for (int k = 0; k < oldKeys.length; k++) {
+		if (oldKeys[k] != 0) {
+		    int i = slot(oldKeys[k] - 1);
+		    keys[i] = oldKeys[k];
+		    values[i] = oldValues[k];
+		}
+	    }
+	}
+    }
+
+    // the neighbor counts share a CellMap value with the state, in bits
+    // 0-15 (the state), 16-19 (fish) and 20-23 (sharks).
+    private final static int FISH_ONE = 1 << 16;
+    private final static int SHARK_ONE = 1 << 20;
+
+    private final int width;
+    private final int height;
+    private final int starveTime;
+    private final RuleTable rules;
+    private CellMap cells;
+    private long generation;
+    private long hash;
+    private long fishCount;
+    private long sharkCount;
+    private long births;
+    private long predation;
+    private long starvations;
+
+    /**
+     *  SparseOcean() is a constructor that creates an empty ocean having
+     *  width i and height j, in which sharks starve after starveTime
+     *  timesteps.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param starveTime is the number of timesteps sharks survive without food.
+     */
+
+    public SparseOcean(int i, int j, int starveTime) {
+	this(i, j, RuleTable.standard(starveTime));
+    }
+
+    /**
+     *  SparseOcean() (with a rule table) is a constructor that creates an
+     *  empty ocean having width i and height j that evolves by "rules", which
+     *  must be quiescent.
+     *  @param i is the width of the ocean.
+     *  @param j is the height of the ocean.
+     *  @param rules is the compiled rule table.
+     */
+
+    public SparseOcean(int i, int j, RuleTable rules) {
+	if ((i <= 0) || (j <= 0)) {
+	    System.out.println("Error: invalid dimensions");
+	    System.exit(0);
+	} if (!rules.quiescent()) {
+	    System.out.println("Error: a sparse ocean needs quiescent rules");
+	    System.exit(0);
+	}
+	width = i;
+	height = j;
+	starveTime = rules.starveTime();
+	this.rules = rules;
+	cells = new CellMap(16);
+    }
+
+    /**
+     *  copyOf() copies any ocean backend into a new SparseOcean that evolves
+     *  by "rules", keeping its generation and the hunger of every shark.
+     *  @param sea is the ocean to copy.
+     *  @param rules is the compiled rule table, for sea.starveTime().
+     *  @return the copy.
+     */
+
+    public static SparseOcean copyOf(OceanBackend sea, RuleTable rules) {
+	SparseOcean copy = new SparseOcean(sea.width(), sea.height(), rules);
+	copy.cells = new CellMap((int) Math.min(sea.fishCount() + sea.sharkCount(),
+						 Integer.MAX_VALUE / 4));
+	for (int y = 0; y < copy.height; y++) {
+	    for (int x = 0; x < copy.width; x++) {
+		int contents = sea.cellContents(x, y);
+		if (contents == Ocean.FISH) {
+		    copy.addFish(x, y);
+		} else if (contents == Ocean.SHARK) {
+		    copy.addShark(x, y, sea.sharkFeeding(x, y));
+		}
+	    }
+	}
+	copy.generation = sea.generation();
+	return copy;
+    }
+
+    public int width() {
+	return width;
+    }
+
+    public int height() {
+	return height;
+    }
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    /**
+     *  rules() returns the rule table the ocean evolves by.
+     */
+
+    public RuleTable rules() {
+	return rules;
+    }
+
+    public long generation() {
+	return generation;
+    }
+
+    public long stateHash() {
+	return hash;
+    }
+
+    public long fishCount() {
+	return fishCount;
+    }
+
+    public long sharkCount() {
+	return sharkCount;
+    }
+
+    public long births() {
+	return births;
+    }
+
+    public long predation() {
+	return predation;
+    }
+
+    public long starvations() {
+	return starvations;
+    }
+
+    // returns the index of cell (x, y), wrapping around.
+    private long cell(int x, int y) {
+	return (long) Ocean.wrap(y, height) * width + Ocean.wrap(x, width);
+    }
+
+    // sets cell (x, y) to a nonzero state, keeping the hash and counts
+    // current.
+    private void set(int x, int y, int after) {
+	long cell = cell(x, y);
+	int before = cells.get(cell);
+	if (before != after) {
+	    hash = hash ^ Zobrist.key(cell, before) ^ Zobrist.key(cell, after);
+	    fishCount = fishCount - (before == 1 ? 1 : 0) + (after == 1 ? 1 : 0);
+	    sharkCount = sharkCount - (before >= 2 ? 1 : 0) + (after >= 2 ? 1 : 0);
+	    cells.put(cell, after);
+	}
+    }
+
+    /**
+     *  addFish() places a fish in cell (x, y), like Ocean.addFish().
+     */
+
+    public void addFish(int x, int y) {
+	set(x, y, 1);
+    }
+
+    /**
+     *  addShark() (with two parameters) places a newborn shark in cell (x, y),
+     *  like Ocean.addShark().
+     */
+
+    public void addShark(int x, int y) {
+	set(x, y, 2);
+    }
+
+    /**
+     *  addShark() (with three parameters) places a shark with hunger "feeding"
+     *  in cell (x, y), like Ocean.addShark().
+     */
+
+    public void addShark(int x, int y, int feeding) {
+	set(x, y, 2 + Math.min(Math.max(feeding, 0), starveTime + 1));
+    }
+
+    /**
+     *  cellContents() returns EMPTY, FISH or SHARK, like Ocean.cellContents().
+     */
+
+    public int cellContents(int x, int y) {
+	int state = cells.get(cell(x, y));
+	if (state == 0) {
+	    return Ocean.EMPTY;
+	}
+	return (state == 1) ? Ocean.FISH : Ocean.SHARK;
+    }
+
+    /**
+     *  sharkFeeding() returns the hunger of the shark in cell (x, y), like
+     *  Ocean.sharkFeeding().
+     */
+
+    public int sharkFeeding(int x, int y) {
+	int state = cells.get(cell(x, y));
+	if (state < 2) {
+	    System.out.println("Error: hunger value not found");
+	    System.exit(0);
+	}
+	return state - 2;
+    }
+
+    /**
+     *  timeStep() returns a new ocean one timestep later, following the same
+     *  rules as Ocean.timeStep(); this ocean is left unchanged.  The cost is
+     *  proportional to the number of occupied cells.
+     *  @return an ocean representing the elapse of one timestep.
+     */
+
+    public SparseOcean timeStep() {
+	StepEvent event = SimulationMetrics.beginStep();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
+	CellMap counts = new CellMap(4 * cells.size);
+	long[] keys = cells.keys;
+	int[] values = cells.values;
+	for (int s = 0; s < keys.length; s++) {
+	    if (keys[s] == 0) {
+		continue;
+	    }
+	    long cell = keys[s] - 1;
+	    int state = values[s];
+	    counts.add(cell, state);
+	    int one = (state == 1) ? FISH_ONE : SHARK_ONE;
+	    int x = (int) (cell % width);
+	    int y = (int) (cell / width);
+	    for (int dy = -1; dy <= 1; dy++) {
+		long row = (long) Ocean.wrap(y + dy, height) * width;
+		for (int dx = -1; dx <= 1; dx++) {
+		    if ((dx != 0) || (dy != 0)) {
+			counts.add(row + Ocean.wrap(x + dx, width), one);
+		    }
+		}
+	    }
+	}
+
+	SparseOcean next = new SparseOcean(width, height, rules);
+	next.cells = new CellMap(cells.size);
+	next.generation = generation + 1;
+	char[] table = rules.next;
+	byte[] events = rules.events;
+	long h = hash;
+	long fish = 0;
+	long sharks = 0;
+	long born = 0;
+	long eaten = 0;
+	long starved = 0;
+	keys = counts.keys;
+	values = counts.values;
+	for (int s = 0; s < keys.length; s++) {
+	    if (keys[s] == 0) {
+		continue;
+	    }
+	    long cell = keys[s] - 1;
+	    int v = values[s];
+	    int before = v & 0xffff;
+	    int k = RuleTable.index(before, (v >>> 16) & 15, (v >>> 20) & 15);
+	    int after = table[k];
+	    int e = events[k];
+	    fish = fish + (e & RuleTable.FISH_AFTER);
+	    sharks = sharks + ((e >>> 1) & 1);
+	    born = born + ((e >>> 2) & 1);
+	    eaten = eaten + ((e >>> 3) & 1);
+	    starved = starved + ((e >>> 4) & 1);
+	    if ((e & RuleTable.CHANGED) != 0) {
+		h = h ^ Zobrist.key(cell, before) ^ Zobrist.key(cell, after);
+	    }
+	    if (after != 0) {
+		next.cells.add(cell, after);
+	    }
+	}
+	next.hash = h;
+	next.fishCount = fish;
+	next.sharkCount = sharks;
+	next.births = born;
+	next.predation = eaten;
+	next.starvations = starved;
+	if (measured) {
+	    SimulationMetrics.recordStep(event, next.generation, width, height,
+					 born, eaten + starved, starved,
+					 System.nanoTime() - start,
+					 SimulationMetrics.allocatedBytes() - allocated);
+	}
+	return next;
+    }
+
+    /**
+     *  toOcean() copies the ocean into an Ocean, visiting only the occupied
+     *  cells.
+     */
+
+    public Ocean toOcean() {
+	Ocean sea = new Ocean(width, height, rules);
+	for (int s = 0; s < cells.keys.length; s++) {
+	    if (cells.keys[s] != 0) {
+		long cell = cells.keys[s] - 1;
+		int x = (int) (cell % width);
+		int y = (int) (cell / width);
+		int state = cells.values[s];
+		if (state == 1) {
+		    sea.addFish(x, y);
+		} else {
+		    sea.addShark(x, y, state - 2);
+		}
+	    }
+	}
+	sea.setGeneration(generation);
+	return sea;
+    }
+}
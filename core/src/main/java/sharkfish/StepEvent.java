@@ -0,0 +1,50 @@
+/* StepEvent.java */
+
+package sharkfish;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  StepEvent is the JFR event committed for each Ocean.timeStep() while a
+ *  recording has it enabled.  The event duration is the step latency.
+ */
+
+@Name("sharkfish.Step")
+@Label("Ocean Time Step")
+@Category("SharkFishSim")
+@Description("One generation of Ocean.timeStep()")
+@StackTrace(false)
+class StepEvent extends jdk.jfr.Event {
+
+    @Label("Generation")
+    long generation;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    // the number of oceans stepped at once: the live members of an Ensemble,
+    // or one.
+    @Label("Members")
+    int members;
+
+    @Label("Births")
+    long births;
+
+    @Label("Deaths")
+    long deaths;
+
+    @Label("Starvations")
+    long starvations;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
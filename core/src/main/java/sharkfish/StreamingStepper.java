@@ -0,0 +1,178 @@
+/* StreamingStepper.java */
+
+package sharkfish;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ *  The StreamingStepper class steps oceans that are too big for memory.  It
+ *  reads generation N from an ocean file (see OceanFile) row by row and
+ *  writes generation N + 1 to another, keeping only a three-row sliding
+ *  window in memory, plus the first two rows, which the last rows need
+ *  because the ocean wraps around.  Rows 1 to height - 1 are written
+ *  sequentially; row 0, which needs the last row, is written last at the
+ *  front of the file.  Reads go through large direct buffers with
+ *  read-ahead, writes through one large direct buffer.
+ *
+ *  The rules are those of Ocean.timeStep(), cell for cell, shark hunger
+ *  included.  From the command line:
+ *
+ *         java sharkfish.StreamingStepper in.ocean out.ocean generations
+ */
+
+public class StreamingStepper {
+
+    public final static int DEFAULT_BUFFER = 8 << 20;
+
+    private int bufferSize;
+
+    public StreamingStepper() {
+	this(DEFAULT_BUFFER);
+    }
+
+    /**
+     *  StreamingStepper() creates a stepper whose read and write buffers each
+     *  hold "bufferSize" bytes.
+     */
+
+    public StreamingStepper(int bufferSize) {
+	if (bufferSize <= 0) {
+	    System.out.println("Error: invalid buffer size");
+	    System.exit(0);
+	}
+	this.bufferSize = bufferSize;
+    }
+
+    /**
+     *  step() reads one generation from "from" and writes the next to "to".
+     *  @param from is the ocean file to read.
+     *  @param to is the ocean file to write; it must not be "from".
+     *  @return the header written to "to".
+     */
+
+    public OceanFile step(Path from, Path to) throws IOException {
+	// writing "to" truncates it before a row of "from" is read.
+	if (Files.exists(to) && Files.isSameFile(from, to)) {
+	    System.out.println("Error: cannot step an ocean file onto itself");
+	    System.exit(0);
+	}
+	StepEvent event = SimulationMetrics.beginStep();
+	boolean measured = (event != null);
+	long start = 0;
+	long allocated = 0;
+	if (measured) {
+	    start = System.nanoTime();
+	    allocated = SimulationMetrics.allocatedBytes();
+	}
+	OceanFile next;
+	try (RowReader in = new RowReader(from, bufferSize);
+	     RowWriter out = new RowWriter(to, bufferSize)) {
+	    OceanFile cur = in.header();
+	    int width = cur.width;
+	    int height = cur.height;
+	    PackedRows kernel = new PackedRows(width, RuleTable.standard(cur.starveTime));
+	    long[] t = new long[PackedRows.TALLIES];
+	    byte[] first = new byte[width];
+	    byte[] second = new byte[width];
+	    byte[] result = new byte[width];
+	    in.readRow(first);
+	    if (height == 1) {
+		kernel.stepRow(first, first, first, result, 0, t);
+		out.writeRow(result);
+	    } else if (height == 2) {
+		in.readRow(second);
+		kernel.stepRow(second, first, second, result, 0, t);
+		out.writeRow(result);
+		kernel.stepRow(first, second, first, result, width, t);
+		out.writeRow(result);
+	    } else {
+		in.readRow(second);
+		byte[] above = first.clone();
+		byte[] row = second.clone();
+		byte[] below = new byte[width];
+		out.skip(width);
+		for (int y = 1; y < height - 1; y++) {
+		    in.readRow(below);
+		    kernel.stepRow(above, row, below, result, (long) y * width, t);
+		    out.writeRow(result);
+		    byte[] swap = above;
+		    above = row;
+		    row = below;
+		    below = swap;
+		}
+		kernel.stepRow(above, row, first, result, (long) (height - 1) * width, t);
+		out.writeRow(result);
+		kernel.stepRow(row, first, second, result, 0, t);
+		out.writeAt(0, result);
+	    }
+	    next = new OceanFile(width, height, cur.starveTime);
+	    next.generation = cur.generation + 1;
+	    next.hash = cur.hash ^ t[PackedRows.HASH];
+	    next.fishCount = t[PackedRows.FISH];
+	    next.sharkCount = t[PackedRows.SHARKS];
+	    next.births = t[PackedRows.BIRTHS];
+	    next.predation = t[PackedRows.PREDATION];
+	    next.starvations = t[PackedRows.STARVATIONS];
+	    out.finish(next);
+	}
+	if (measured) {
+	    SimulationMetrics.recordStep(event, next.generation, next.width,
+					 next.height, next.births,
+					 next.predation + next.starvations,
+					 next.starvations, System.nanoTime() - start,
+					 SimulationMetrics.allocatedBytes() - allocated);
+	}
+	return next;
+    }
+
+    /**
+     *  run() steps the ocean in "from" the given number of generations and
+     *  leaves the last one in "to", using "scratch" for every other
+     *  intermediate generation.  "from" is not modified.
+     *  @return the header written to "to".
+     */
+
+    public OceanFile run(Path from, Path to, Path scratch, int generations)
+	throws IOException {
+	if (generations <= 0) {
+	    System.out.println("Error: invalid number of generations");
+	    System.exit(0);
+	}
+	OceanFile last = null;
+	Path source = from;
+	for (int k = 1; k <= generations; k++) {
+	    Path target = ((generations - k) % 2 == 0) ? to : scratch;
+	    last = step(source, target);
+	    source = target;
+	}
+	return last;
+    }
+
+    /**
+     *  main() steps an ocean file from the command line and prints the
+     *  population after every generation.
+     */
+
+    public static void main(String[] argv) throws IOException {
+	if (argv.length < 3) {
+	    System.out.println("Usage: java sharkfish.StreamingStepper in out generations [scratch]");
+	    System.exit(0);
+	}
+	Path from = Paths.get(argv[0]);
+	Path to = Paths.get(argv[1]);
+	int generations = Integer.parseInt(argv[2]);
+	Path scratch = Paths.get((argv.length > 3) ? argv[3] : argv[1] + ".tmp");
+	StreamingStepper stepper = new StreamingStepper();
+	Path source = from;
+	for (int k = 1; k <= generations; k++) {
+	    Path target = ((generations - k) % 2 == 0) ? to : scratch;
+	    OceanFile f = stepper.step(source, target);
+	    System.out.println("generation " + f.generation() + ": " + f.fishCount()
+			       + " fish, " + f.sharkCount() + " sharks");
+	    source = target;
+	}
+    }
+}
@@ -0,0 +1,339 @@
+/* StripCoordinator.java */
+
+package sharkfish;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  The StripCoordinator class runs an Ocean split across several StripWorkers,
+ *  each owning a horizontal strip of rows.  Worker k owns rows
+ *  [k * height / n, (k + 1) * height / n).  The workers exchange one-row
+ *  halos with their neighbors directly over sockets after every timestep;
+ *  the coordinator only distributes the initial ocean, triggers timesteps,
+ *  adds up the workers' population counts, and gathers snapshots on request.
+ *  The generations it produces are identical to those of Ocean.timeStep(),
+ *  including shark hunger and state hashes.
+ *
+ *  The protocol, over DataInput/DataOutput streams:
+ *
+ *    worker -> coordinator:  port on which the worker accepts its south
+ *                            neighbor.
+ *    coordinator -> worker:  width, height, starveTime, first row, row count,
+ *                            north neighbor's host and port, then the
+ *                            strip's cell states row by row.
+ *    coordinator -> worker:  STEP, SNAPSHOT or CLOSE.  A STEP is answered
+ *                            with the strip's fish, sharks, births, predation
+ *                            and starvations and its share of the state hash;
+ *                            a SNAPSHOT with the strip's cell states.
+ *
+ *  Workers can be threads in this JVM (local()), JVMs started on this
+ *  machine (spawn()), or processes started elsewhere that connect to a
+ *  coordinator created by listen().
+ */
+
+public class StripCoordinator implements Closeable {
+
+    private ServerSocket server;
+    private int workerCount;
+    private Socket[] sockets;
+    private DataInputStream[] ins;
+    private DataOutputStream[] outs;
+    private List<Thread> threads = new ArrayList<Thread>();
+    private List<Process> processes = new ArrayList<Process>();
+
+    private int width;
+    private int height;
+    private int starveTime;
+    private long generation;
+    private long hash;
+    private int fishCount;
+    private int sharkCount;
+    private int births;
+    private int predation;
+    private int starvations;
+
+    private StripCoordinator(ServerSocket server, int workers) {
+	this.server = server;
+	workerCount = workers;
+	sockets = new Socket[workers];
+	ins = new DataInputStream[workers];
+	outs = new DataOutputStream[workers];
+    }
+
+    /**
+     *  local() runs "sea" on "workers" strips, each stepped by a thread of this
+     *  JVM that talks to the others over loopback sockets.
+     *  @param sea is the initial ocean, following the rules of README in the
+     *         standard neighborhood.
+     *  @param workers is the number of strips, from 1 to sea.height().
+     *  @return the coordinator, ready to step.
+     */
+
+    public static StripCoordinator local(Ocean sea, int workers) throws IOException {
+	StripCoordinator coordinator = open(sea, workers, 0, InetAddress.getLoopbackAddress());
+	int port = coordinator.server.getLocalPort();
+	for (int k = 0; k < workers; k++) {
+	    Thread t = new Thread(() -> {
+		try {
+		    new StripWorker().run(InetAddress.getLoopbackAddress().getHostAddress(), port);
+		} catch (IOException e) {
+		    System.out.println("Error: strip worker failed: " + e);
+		}
+	    }, "strip-worker-" + k);
+	    t.setDaemon(true);
+	    t.start();
+	    coordinator.threads.add(t);
+	}
+	coordinator.distribute(sea);
+	return coordinator;
+    }
+
+    /**
+     *  spawn() runs "sea" on "workers" strips, each stepped by a new JVM on this
+     *  machine started with this JVM's class path.
+     *  @param sea is the initial ocean, following the rules of README in the
+     *         standard neighborhood.
+     *  @param workers is the number of strips, from 1 to sea.height().
+     *  @return the coordinator, ready to step.
+     */
+
+    public static StripCoordinator spawn(Ocean sea, int workers) throws IOException {
+	StripCoordinator coordinator = open(sea, workers, 0, InetAddress.getLoopbackAddress());
+	String java = System.getProperty("java.home") + File.separator + "bin"
+	    + File.separator + "java";
+	for (int k = 0; k < workers; k++) {
+	    ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+		System.getProperty("java.class.path"), StripWorker.class.getName(),
+		InetAddress.getLoopbackAddress().getHostAddress(),
+		Integer.toString(coordinator.server.getLocalPort()));
+	    builder.inheritIO();
+	    coordinator.processes.add(builder.start());
+	}
+	coordinator.distribute(sea);
+	return coordinator;
+    }
+
+    /**
+     *  listen() runs "sea" on "workers" strips stepped by StripWorkers started
+     *  by the caller, on any machine, and pointed at "port" on this one.  It
+     *  returns once all of them have connected.
+     *  @param sea is the initial ocean, following the rules of README in the
+     *         standard neighborhood.
+     *  @param workers is the number of strips, from 1 to sea.height().
+     *  @param port is the port to accept workers on.
+     *  @return the coordinator, ready to step.
+     */
+
+    public static StripCoordinator listen(Ocean sea, int workers, int port) throws IOException {
+	StripCoordinator coordinator = open(sea, workers, port, null);
+	coordinator.distribute(sea);
+	return coordinator;
+    }
+
+    private static StripCoordinator open(Ocean sea, int workers, int port,
+					 InetAddress address) throws IOException {
+	if ((workers <= 0) || (workers > sea.height())) {
+	    System.out.println("Error: invalid number of strips");
+	    System.exit(0);
+	}
+	if (!PackedRows.supports(sea)) {
+	    System.out.println("Error: strips step only the standard rules and"
+			       + " neighborhood");
+	    System.exit(0);
+	}
+	return new StripCoordinator(new ServerSocket(port, workers, address), workers);
+    }
+
+    /**
+     *  distribute() accepts every worker and hands it its strip and the
+     *  address of its north neighbor.
+     */
+
+    private void distribute(Ocean sea) throws IOException {
+	width = sea.width();
+	height = sea.height();
+	starveTime = sea.starveTime();
+	generation = sea.generation();
+	hash = sea.stateHash();
+	fishCount = (int) sea.fishCount();
+	sharkCount = (int) sea.sharkCount();
+	int[] peerPorts = new int[workerCount];
+	for (int k = 0; k < workerCount; k++) {
+	    sockets[k] = server.accept();
+	    sockets[k].setTcpNoDelay(true);
+	    ins[k] = new DataInputStream(new BufferedInputStream(sockets[k].getInputStream(), 1 << 16));
+	    outs[k] = new DataOutputStream(new BufferedOutputStream(sockets[k].getOutputStream(), 1 << 16));
+	    peerPorts[k] = ins[k].readInt();
+	}
+	for (int k = 0; k < workerCount; k++) {
+	    int north = (k + workerCount - 1) % workerCount;
+	    int y0 = firstRow(k);
+	    int y1 = firstRow(k + 1);
+	    DataOutputStream out = outs[k];
+	    out.writeInt(width);
+	    out.writeInt(height);
+	    out.writeInt(starveTime);
+	    out.writeInt(y0);
+	    out.writeInt(y1 - y0);
+	    out.writeUTF(sockets[north].getInetAddress().getHostAddress());
+	    out.writeInt(peerPorts[north]);
+	    for (int y = y0; y < y1; y++) {
+		for (int x = 0; x < width; x++) {
+		    out.writeInt(sea.state(x, y));
+		}
+	    }
+	    out.flush();
+	}
+    }
+
+    private int firstRow(int k) {
+	return (int) ((long) k * height / workerCount);
+    }
+
+    /**
+     *  timeStep() advances the distributed ocean one timestep and collects the
+     *  global population counts.
+     */
+
+    public void timeStep() throws IOException {
+	for (int k = 0; k < workerCount; k++) {
+	    outs[k].writeInt(StripWorker.STEP);
+	    outs[k].flush();
+	}
+	int fish = 0;
+	int sharks = 0;
+	int born = 0;
+	int eaten = 0;
+	int starved = 0;
+	long h = 0;
+	for (int k = 0; k < workerCount; k++) {
+	    DataInputStream in = ins[k];
+	    fish = fish + in.readInt();
+	    sharks = sharks + in.readInt();
+	    born = born + in.readInt();
+	    eaten = eaten + in.readInt();
+	    starved = starved + in.readInt();
+	    h = h ^ in.readLong();
+	}
+	generation++;
+	fishCount = fish;
+	sharkCount = sharks;
+	births = born;
+	predation = eaten;
+	starvations = starved;
+	hash = h;
+    }
+
+    /**
+     *  snapshot() gathers every strip and returns a run-length encoding of the
+     *  current generation, shark hunger included.
+     */
+
+    public RunLengthEncoding snapshot() throws IOException {
+	for (int k = 0; k < workerCount; k++) {
+	    outs[k].writeInt(StripWorker.SNAPSHOT);
+	    outs[k].flush();
+	}
+	int[] states = new int[width * height];
+	for (int k = 0; k < workerCount; k++) {
+	    for (int n = firstRow(k) * width; n < firstRow(k + 1) * width; n++) {
+		states[n] = ins[k].readInt();
+	    }
+	}
+	return new RunLengthEncoding(width, height, starveTime, states);
+    }
+
+    public int width() {
+	return width;
+    }
+
+    public int height() {
+	return height;
+    }
+
+    public int starveTime() {
+	return starveTime;
+    }
+
+    public int workers() {
+	return workerCount;
+    }
+
+    /**
+     *  The following methods return the same figures as the Ocean methods of
+     *  the same names would for the current generation.
+     */
+
+    public long generation() {
+	return generation;
+    }
+
+    public long stateHash() {
+	return hash;
+    }
+
+    public int fishCount() {
+	return fishCount;
+    }
+
+    public int sharkCount() {
+	return sharkCount;
+    }
+
+    public int births() {
+	return births;
+    }
+
+    public int predation() {
+	return predation;
+    }
+
+    public int starvations() {
+	return starvations;
+    }
+
+    /**
+     *  close() tells every worker to stop, closes the sockets, and waits for
+     *  worker threads and processes to finish.
+     */
+
+    public void close() throws IOException {
+	for (int k = 0; k < workerCount; k++) {
+	    if (outs[k] != null) {
+		try {
+		    outs[k].writeInt(StripWorker.CLOSE);
+		    outs[k].flush();
+		} catch (IOException e) {
+		    // the worker is gone already.
+		}
+	    }
+	}
+	try {
+	    for (Thread t : threads) {
+		t.join();
+	    }
+	    for (Process p : processes) {
+		p.waitFor();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	for (int k = 0; k < workerCount; k++) {
+	    if (sockets[k] != null) {
+		sockets[k].close();
+	    }
+	}
+	server.close();
+    }
+}
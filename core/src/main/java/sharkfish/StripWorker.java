@@ -0,0 +1,230 @@
+/* StripWorker.java */
+
+package sharkfish;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  The StripWorker class steps one horizontal strip of a distributed ocean.
+ *  It is started by a StripCoordinator, either as a thread or as its own JVM:
+ *
+ *         java -cp sharkfish-core.jar sharkfish.StripWorker host port
+ *
+ *  The strip is stored as an array of cell states (numbered as by
+ *  OceanNode.state()) with one extra "halo" row above and below.  Before
+ *  every timestep the worker sends its top row to the worker that owns the
+ *  rows just above it and its bottom row to the worker just below, and
+ *  receives their edge rows into its halos.  Neighbors are taken modulo the
+ *  number of workers, which maps the wrap of Ocean.wrap() in the y direction
+ *  onto the strips; the x direction wraps within each row.  With a single
+ *  worker, the worker is its own neighbor in both directions.
+ */
+
+public class StripWorker {
+
+    final static int STEP = 1;
+    final static int SNAPSHOT = 2;
+    final static int CLOSE = 3;
+
+    private int width;
+    private int starveTime;
+    private RuleTable rules;
+    private int y0;
+    private int rows;
+    private int[] cells;
+    private int[] next;
+    private long hash;
+    private byte[] rowBytes;
+    private byte[] sendBytes;
+
+    /**
+     *  main() connects to the coordinator at the given host and port and
+     *  serves it until told to close.
+     */
+
+    public static void main(String[] argv) throws IOException {
+	if (argv.length < 2) {
+	    System.out.println("Usage: java sharkfish.StripWorker host port");
+	    System.exit(0);
+	}
+	new StripWorker().run(argv[0], Integer.parseInt(argv[1]));
+    }
+
+    /**
+     *  run() performs the worker's side of the protocol described in
+     *  StripCoordinator.
+     *  @param host is the host of the coordinator.
+     *  @param port is the port of the coordinator.
+     */
+
+    void run(String host, int port) throws IOException {
+	ExecutorService sender = Executors.newSingleThreadExecutor();
+	try (Socket coordinator = new Socket(host, port);
+	     ServerSocket peers = new ServerSocket(0)) {
+	    coordinator.setTcpNoDelay(true);
+	    DataInputStream in = input(coordinator);
+	    DataOutputStream out = output(coordinator);
+	    out.writeInt(peers.getLocalPort());
+	    out.flush();
+
+	    width = in.readInt();
+	    in.readInt();
+	    starveTime = in.readInt();
+	    rules = RuleTable.standard(starveTime);
+	    y0 = in.readInt();
+	    rows = in.readInt();
+	    String northHost = in.readUTF();
+	    int northPort = in.readInt();
+	    cells = new int[(rows + 2) * width];
+	    next = new int[(rows + 2) * width];
+	    rowBytes = new byte[4 * width];
+	    sendBytes = new byte[4 * width];
+	    for (int k = width; k < (rows + 1) * width; k++) {
+		cells[k] = in.readInt();
+		hash = hash ^ Zobrist.key(y0 * width + k - width, cells[k]);
+	    }
+
+	    try (Socket north = new Socket(northHost, northPort);
+		 Socket south = peers.accept()) {
+		north.setTcpNoDelay(true);
+		south.setTcpNoDelay(true);
+		DataInputStream fromNorth = input(north);
+		DataOutputStream toNorth = output(north);
+		DataInputStream fromSouth = input(south);
+		DataOutputStream toSouth = output(south);
+		while (true) {
+		    int command = in.readInt();
+		    if (command == STEP) {
+			exchange(sender, fromNorth, toNorth, fromSouth, toSouth);
+			step(out);
+		    } else if (command == SNAPSHOT) {
+			for (int k = width; k < (rows + 1) * width; k++) {
+			    out.writeInt(cells[k]);
+			}
+			out.flush();
+		    } else {
+			break;
+		    }
+		}
+	    }
+	} finally {
+	    sender.shutdownNow();
+	}
+    }
+
+    private static DataInputStream input(Socket s) throws IOException {
+	return new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+    }
+
+    private static DataOutputStream output(Socket s) throws IOException {
+	return new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     *  exchange() fills both halo rows.  The edge rows are sent on a separate
+     *  thread so that two workers sending to each other at once cannot both
+     *  block on full socket buffers.
+     */
+
+    private void exchange(ExecutorService sender, DataInputStream fromNorth,
+			  DataOutputStream toNorth, DataInputStream fromSouth,
+			  DataOutputStream toSouth) throws IOException {
+	Future<?> sent = sender.submit(() -> {
+	    writeRow(toNorth, 1);
+	    writeRow(toSouth, rows);
+	    return null;
+	});
+	readRow(fromNorth, 0);
+	readRow(fromSouth, rows + 1);
+	try {
+	    sent.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException(e);
+	} catch (ExecutionException e) {
+	    throw new IOException(e.getCause());
+	}
+    }
+
+    private void writeRow(DataOutputStream out, int row) throws IOException {
+	ByteBuffer.wrap(sendBytes).asIntBuffer().put(cells, row * width, width);
+	out.write(sendBytes);
+	out.flush();
+    }
+
+    private void readRow(DataInputStream in, int row) throws IOException {
+	in.readFully(rowBytes);
+	ByteBuffer.wrap(rowBytes).asIntBuffer().get(cells, row * width, width);
+    }
+
+    /**
+     *  step() advances the strip one timestep, exactly as Ocean.timeStep()
+     *  advances the same rows, and reports the strip's totals to the
+     *  coordinator.
+     */
+
+    private void step(DataOutputStream out) throws IOException {
+	int fish = 0;
+	int sharks = 0;
+	int births = 0;
+	int predation = 0;
+	int starvations = 0;
+	for (int r = 1; r <= rows; r++) {
+	    for (int c = 0; c < width; c++) {
+		int fishnum = 0;
+		int sharksnum = 0;
+		for (int dr = -1; dr <= 1; dr++) {
+		    int base = (r + dr) * width;
+		    for (int dc = -1; dc <= 1; dc++) {
+			int s = cells[base + Ocean.wrap(c + dc, width)];
+			if (s == 1) {
+			    fishnum++;
+			} else if (s >= 2) {
+			    sharksnum++;
+			}
+		    }
+		}
+		int before = cells[r * width + c];
+		if (before == 1) {
+		    fishnum--;
+		} else if (before >= 2) {
+		    sharksnum--;
+		}
+		int k = RuleTable.index(before, fishnum, sharksnum);
+		int after = rules.next[k];
+		int e = rules.events[k];
+		next[r * width + c] = after;
+		fish = fish + (e & RuleTable.FISH_AFTER);
+		sharks = sharks + ((e >>> 1) & 1);
+		births = births + ((e >>> 2) & 1);
+		predation = predation + ((e >>> 3) & 1);
+		starvations = starvations + ((e >>> 4) & 1);
+		if ((e & RuleTable.CHANGED) != 0) {
+		    int cell = (y0 + r - 1) * width + c;
+		    hash = hash ^ Zobrist.key(cell, before) ^ Zobrist.key(cell, after);
+		}
+	    }
+	}
+	int[] swap = cells;
+	cells = next;
+	next = swap;
+	out.writeInt(fish);
+	out.writeInt(sharks);
+	out.writeInt(births);
+	out.writeInt(predation);
+	out.writeInt(starvations);
+	out.writeLong(hash);
+	out.flush();
+    }
+}
@@ -0,0 +1,162 @@
+/* SummedAreaTable.java */
+
+package sharkfish;
+
+import java.util.stream.IntStream;
+
+/**
+ *  The SummedAreaTable class answers population queries over rectangles of
+ *  an ocean in constant time.  It holds, for every corner (x, y), the number
+ *  of fish and of sharks in the cells above and to the left of it, so the
+ *  count in any rectangle is four lookups.  Rectangles may wrap around the
+ *  edges of the ocean, as neighborhoods do; a wrapping rectangle is split
+ *  into at most four that do not wrap.
+ *
+ *  A table describes one generation and never changes.  It is built in two
+ *  parallel passes, one over rows and one over columns.  Ocean builds one
+ *  for every generation when asked to (see Ocean.buildAreaTables()).
+ */
+
+public class SummedAreaTable {
+
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final int[] fish;
+    private final int[] sharks;
+
+    // fish[(y * stride) + x] is the number of fish in cells (c, r) with
+    // c < x and r < y, and likewise sharks; stride is width + 1.
+    private SummedAreaTable(int width, int height, byte[] contents) {
+	this.width = width;
+	this.height = height;
+	stride = width + 1;
+	fish = new int[stride * (height + 1)];
+	sharks = new int[stride * (height + 1)];
+	IntStream.range(0, height).parallel().forEach(y -> {
+	    int f = 0;
+	    int s = 0;
+	    int row = (y + 1) * stride;
+	    for (int x = 0; x < width; x++) {
+		int cell = contents[y * width + x];
+		f = f + (cell == Ocean.FISH ? 1 : 0);
+		s = s + (cell == Ocean.SHARK ? 1 : 0);
+		fish[row + x + 1] = f;
+		sharks[row + x + 1] = s;
+	    }
+	});
+	int chunk = 256;
+	IntStream.range(0, (stride + chunk - 1) / chunk).parallel().forEach(b -> {
+	    int lo = b * chunk;
+	    int hi = Math.min(stride, lo + chunk);
+	    for (int y = 2; y <= height; y++) {
+		int row = y * stride;
+		for (int x = lo; x < hi; x++) {
+		    fish[row + x] = fish[row + x] + fish[row - stride + x];
+		    sharks[row + x] = sharks[row + x] + sharks[row - stride + x];
+		}
+	    }
+	});
+    }
+
+    /**
+     *  of() builds the summed-area table of the current generation of "sea".
+     *  @param sea is the ocean.
+     *  @return the table.
+     */
+
+    public static SummedAreaTable of(OceanBackend sea) {
+	int width = sea.width();
+	int height = sea.height();
+	byte[] contents = new byte[width * height];
+	if (sea instanceof Ocean) {
+	    ((Ocean) sea).cellContents(contents);
+	} else {
+	    for (int y = 0; y < height; y++) {
+		for (int x = 0; x < width; x++) {
+		    contents[y * width + x] = (byte) sea.cellContents(x, y);
+		}
+	    }
+	}
+	return new SummedAreaTable(width, height, contents);
+    }
+
+    /**
+     *  width() returns the width of the ocean the table describes.
+     */
+
+    public int width() {
+	return width;
+    }
+
+    /**
+     *  height() returns the height of the ocean the table describes.
+     */
+
+    public int height() {
+	return height;
+    }
+
+    /**
+     *  countInRect() returns an array containing the population of the
+     *  rectangle of cells from (x0, y0) to (x1, y1), inclusive, going right
+     *  and down from (x0, y0) and wrapping around the edges.  All four
+     *  coordinates wrap, so (x0, y0, x0 - 1, y0 - 1) is the whole ocean.
+     *  The index at zero holds the number of fish in the rectangle.
+     *  The index at one holds the number of sharks in the rectangle.
+     *  @param x0 is the x-coordinate of the rectangle's left column.
+     *  @param y0 is the y-coordinate of the rectangle's top row.
+     *  @param x1 is the x-coordinate of the rectangle's right column.
+     *  @param y1 is the y-coordinate of the rectangle's bottom row.
+     */
+
+    public int[] countInRect(int x0, int y0, int x1, int y1) {
+	return new int[] {fishInRect(x0, y0, x1, y1), sharksInRect(x0, y0, x1, y1)};
+    }
+
+    /**
+     *  fishInRect() returns the number of fish in the rectangle described by
+     *  countInRect(), without allocating.
+     */
+
+    public int fishInRect(int x0, int y0, int x1, int y1) {
+	return inRect(fish, x0, y0, x1, y1);
+    }
+
+    /**
+     *  sharksInRect() returns the number of sharks in the rectangle described
+     *  by countInRect(), without allocating.
+     */
+
+    public int sharksInRect(int x0, int y0, int x1, int y1) {
+	return inRect(sharks, x0, y0, x1, y1);
+    }
+
+    // sums "table" over the wrapping rectangle, as up to four plain ones.
+    private int inRect(int[] table, int x0, int y0, int x1, int y1) {
+	int left = Ocean.wrap(x0, width);
+	int top = Ocean.wrap(y0, height);
+	int right = left + Ocean.wrap(x1 - x0, width) + 1;
+	int bottom = top + Ocean.wrap(y1 - y0, height) + 1;
+	if (right <= width) {
+	    return columns(table, left, right, top, bottom);
+	}
+	return columns(table, left, width, top, bottom)
+	    + columns(table, 0, right - width, top, bottom);
+    }
+
+    // sums columns [left, right) of the wrapping rows [top, bottom).
+    private int columns(int[] table, int left, int right, int top, int bottom) {
+	if (bottom <= height) {
+	    return plain(table, left, right, top, bottom);
+	}
+	return plain(table, left, right, top, height)
+	    + plain(table, left, right, 0, bottom - height);
+    }
+
+    // sums the cells (x, y) with left <= x < right and top <= y < bottom.
+    private int plain(int[] table, int left, int right, int top, int bottom) {
+	return table[bottom * stride + right] - table[top * stride + right]
+	    - table[bottom * stride + left] + table[top * stride + left];
+    }
+}
@@ -0,0 +1,38 @@
+/* Zobrist.java */
+
+package sharkfish;
+
+/**
+ *  Zobrist is a class used internally to hash ocean states.  Every pair of a
+ *  cell index and a cell state (as returned by OceanNode.state()) has a
+ *  pseudorandom 64-bit key, and the hash of an ocean is the exclusive-or of
+ *  the keys of its cells.  Empty cells have key zero, so an empty ocean hashes
+ *  to zero.  Keys are computed on demand rather than tabulated, so they cost
+ *  no memory however large the ocean or starveTime.
+ */
+
+final class Zobrist {
+
+    private final static long SEED = 0x5DEECE66DL;
+
+    private Zobrist() {
+    }
+
+    /**
+     *  key() returns the key of a cell in a state.
+     *  @param cell is the row-major index of the cell, y * width + x.
+     *  @param state is 0 for empty, 1 for fish, and 2 + hunger for a shark.
+     *  @return the key, which is zero exactly when state is zero.
+     */
+
+    static long key(long cell, int state) {
+	if (state == 0) {
+	    return 0L;
+	}
+	long z = SEED + cell * 0x9E3779B97F4A7C15L + state * 0xD1B54A32D192ED03L;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	z = z ^ (z >>> 31);
+	return (z == 0) ? 1L : z;
+    }
+}